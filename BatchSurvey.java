@@ -0,0 +1,265 @@
+/************
+ *
+ *    Batch runner for FreeCell game.  Solves a range of numbered deals in parallel and
+ *    records for each one whether it was solved, proved unsolvable, or ran out of
+ *    budget, with the solution length and the nodes expanded.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/*
+ *   BatchSurvey writes one fixed sized record per deal to an append only file, in
+ *   deal order, as results come in, so nothing is collected in memory.  A record is
+ *   RECORD_SIZE bytes: the deal number (8 bytes), the Solution status (1 byte), a
+ *   reserved byte, the solution length (2 bytes), and the nodes expanded (4 bytes),
+ *   all big endian.
+ *
+ *   Deals are solved by a fixed pool of threads, each running its own Solver, with a
+ *   bounded window of deals in flight.  Results are taken in the order the deals were
+ *   submitted, so the file is always a complete run of deals from the first one.  The
+ *   same loop, inOrder, runs every tool that works through a range of deals.  The
+ *   file is forced to disk every COMMIT_INTERVAL records.  After a crash, running the
+ *   survey again on the same file drops any partly written record and starts from the
+ *   deal after the last one in the file.
+ */
+public class BatchSurvey
+{
+    public static final int RECORD_SIZE = 16;
+
+    private static final int COMMIT_INTERVAL = 1024;
+    private static final int WINDOW_PER_THREAD = 16;
+
+    private final int threads;
+
+    /*
+     *   What is done with each result of inOrder, on the thread that called it.
+     */
+    public interface ResultHandler< T >
+    {
+        void accept( long deal, T result ) throws IOException;
+    }
+
+    /*
+     *   Each pool thread keeps its own Board, deck buffer, and Solver, so dealing
+     *   allocates nothing and a Solver is made once per thread rather than per deal.
+     */
+    private final ThreadLocal< Board > boards = ThreadLocal.withInitial( Board::new );
+    private final ThreadLocal< byte [] > decks =
+        ThreadLocal.withInitial( () -> new byte [ Board.DECK_SIZE ] );
+    private final ThreadLocal< Solver > solvers;
+
+    /*
+     *   Constructor method.
+     *
+     *   @param       threads            number of deals to solve at once
+     *   @param       nodeBudget         node budget of the Solver for each deal
+     *   @param       timeBudgetMillis   time budget of the Solver for each deal
+     */
+    public BatchSurvey( int threads, long nodeBudget, long timeBudgetMillis )
+    {
+        this.threads = threads;
+        solvers = ThreadLocal.withInitial( () ->
+            new Solver( nodeBudget, timeBudgetMillis ) );
+    }
+
+    /*
+     *   Solve one deal on the calling thread.
+     *
+     *   @param       deal           deal number
+     *   @return                     Solution for the deal
+     */
+    private Solution solveDeal( long deal )
+    {
+        byte [] deck = decks.get();
+        Board board = boards.get();
+        Deals.fill( deal, deck );
+        board.deal( deck );
+        return solvers.get().solve( board );
+    }
+
+    /*
+     *   Survey a range of deals, appending a record for each to a file.  If the file
+     *   already has records, the survey carries on from the deal after the last one.
+     *
+     *   @param       first          first deal number of the range
+     *   @param       last           last deal number of the range
+     *   @param       file           Path of the results file
+     *   @return                     number of deals surveyed by this call
+     */
+    public long run( long first, long last, Path file )
+        throws IOException, InterruptedException
+    {
+        try( FileChannel channel = FileChannel.open( file, StandardOpenOption.CREATE,
+                                                     StandardOpenOption.READ,
+                                                     StandardOpenOption.WRITE ) )
+        {
+            long next = Math.max( first, resumePoint( channel ) );
+            channel.position( channel.size() );
+            ByteBuffer buffer = ByteBuffer.allocate( RECORD_SIZE * COMMIT_INTERVAL );
+            inOrder( threads, next, last, this::solveDeal, ( deal, s ) ->
+            {
+                writeRecord( buffer, deal, s );
+                if( ! buffer.hasRemaining() )
+                {
+                    commit( channel, buffer );
+                }
+            } );
+            commit( channel, buffer );
+            return Math.max( last - next + 1, 0 );
+        }
+    }
+
+    /*
+     *   Run a task for each deal of a range on a fixed pool of threads, and hand the
+     *   results over in deal order.  Only a bounded window of deals is in flight, so
+     *   any range can be run without collecting its results in memory, and a slow deal
+     *   holds up the handler but never the other threads for long.
+     *
+     *   @param       threads        number of deals to work on at once
+     *   @param       first          first deal number of the range
+     *   @param       last           last deal number of the range
+     *   @param       task           work for one deal, run on a pool thread
+     *   @param       handler        ResultHandler given each deal and its result in
+     *                               order, on the calling thread
+     */
+    public static < T > void inOrder( int threads, long first, long last,
+                                      LongFunction< T > task, ResultHandler< T > handler )
+        throws IOException, InterruptedException
+    {
+        ExecutorService pool = Executors.newFixedThreadPool( threads );
+        try
+        {
+            ArrayDeque< Future< T > > inFlight = new ArrayDeque< Future< T > >();
+            long next = first;
+            for( long deal = first; deal <= last; deal++ )
+            {
+                while( next <= last && inFlight.size() < threads * WINDOW_PER_THREAD )
+                {
+                    long d = next++;
+                    inFlight.add( pool.submit( () -> task.apply( d ) ) );
+                }
+                handler.accept( deal, inFlight.poll().get() );
+            }
+        }
+        catch( ExecutionException e )
+        {
+            throw new IOException( "Solver failed", e.getCause() );
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+     *   Find where an earlier survey on the same file stopped.  A record cut short by
+     *   a crash is dropped by truncating the file to a whole number of records.
+     *
+     *   @param       channel        FileChannel of the results file
+     *   @return                     deal after the last recorded one, or 0 if empty
+     */
+    private static long resumePoint( FileChannel channel ) throws IOException
+    {
+        long records = channel.size() / RECORD_SIZE;
+        channel.truncate( records * RECORD_SIZE );
+        if( records == 0 )
+        {
+            return 0;
+        }
+        ByteBuffer last = ByteBuffer.allocate( 8 );
+        channel.read( last, ( records - 1 ) * RECORD_SIZE );
+        return last.getLong( 0 ) + 1;
+    }
+
+    /*
+     *   Add one record to the output buffer.
+     */
+    private static void writeRecord( ByteBuffer buffer, long deal, Solution s )
+    {
+        buffer.putLong( deal );
+        buffer.put( ( byte ) s.getStatus() );
+        buffer.put( ( byte ) 0 );
+        buffer.putShort( ( short ) s.getMoves().length );
+        buffer.putInt( ( int ) Math.min( s.getNodes(), Integer.MAX_VALUE ) );
+    }
+
+    /*
+     *   Append the buffered records to the file and force them to disk, so they
+     *   survive a crash.
+     */
+    private static void commit( FileChannel channel, ByteBuffer buffer )
+        throws IOException
+    {
+        buffer.flip();
+        while( buffer.hasRemaining() )
+        {
+            channel.write( buffer );
+        }
+        channel.force( false );
+        buffer.clear();
+    }
+
+    /*
+     *   Count the records of each status in a results file.
+     *
+     *   @param       file           Path of the results file
+     *   @return                     long [] of counts indexed by Solution status
+     */
+    public static long [] summarize( Path file ) throws IOException
+    {
+        long [] counts = new long [ 3 ];
+        try( DataInputStream in = new DataInputStream( new BufferedInputStream(
+                                      Files.newInputStream( file ) ) ) )
+        {
+            long records = Files.size( file ) / RECORD_SIZE;
+            for( long i = 0; i < records; i++ )
+            {
+                in.readLong();
+                counts[ in.readByte() ]++;
+                in.skipBytes( RECORD_SIZE - 9 );
+            }
+        }
+        return counts;
+    }
+
+    /*
+     *   Usage: java BatchSurvey firstDeal lastDeal file [threads] [nodeBudget]
+     */
+    public static void main( String [] args ) throws Exception
+    {
+        if( args.length < 3 )
+        {
+            System.err.println( "Usage: java BatchSurvey firstDeal lastDeal file " +
+                                "[threads] [nodeBudget]" );
+            System.exit( 2 );
+        }
+        long first = Long.parseLong( args[ 0 ] );
+        long last = Long.parseLong( args[ 1 ] );
+        Path file = Paths.get( args[ 2 ] );
+        int threads = args.length > 3 ? Integer.parseInt( args[ 3 ] ) :
+                      Runtime.getRuntime().availableProcessors();
+        long budget = args.length > 4 ? Long.parseLong( args[ 4 ] ) :
+                      Solver.DEFAULT_NODE_BUDGET;
+
+        long began = System.nanoTime();
+        BatchSurvey survey =
+            new BatchSurvey( threads, budget, Solver.DEFAULT_TIME_BUDGET_MILLIS );
+        long surveyed = survey.run( first, last, file );
+        double seconds = ( System.nanoTime() - began ) / 1e9;
+        long [] counts = summarize( file );
+        System.out.printf( "%d deals surveyed in %.1f s.  File totals: %d solvable, " +
+                           "%d unsolvable, %d budget exhausted%n", surveyed, seconds,
+                           counts[ Solution.SOLVED ], counts[ Solution.UNSOLVABLE ],
+                           counts[ Solution.BUDGET_EXHAUSTED ] );
+    }
+}
@@ -0,0 +1,1072 @@
+/************
+ *
+ *    Board class for FreeCell game.  Holds the complete state of one game using only
+ *    primitive arrays, so a game can be dealt, played, copied, and analyzed without
+ *    building a JFrame or any Swing components.  The FreeCell GUI is a view over a
+ *    Board, and every rule it enforces is decided here.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.util.*;
+
+/*
+ *   Board stores each card as a byte code from 0 - 51.  The code is the Suit ordinal
+ *   multiplied by 13 plus the Rank ordinal, which is the same order the FreeCell
+ *   constructor uses to fill its gameDeck Array, so gameDeck[ code ] is always the
+ *   Card shown for a code.  Columns are fixed capacity rows of codes with a separate
+ *   length for each, and the free cells and remove piles are small Arrays holding the
+ *   code in each slot, or EMPTY.
+ */
+public class Board
+{
+    /*
+     *   Dimensions of the game.  A column can hold at most 7 dealt Cards with a full
+     *   ordered run of 12 more stacked on top, so 19 rows is always enough.
+     */
+    public static final int COLUMNS = 8;
+    public static final int CELLS = 4;
+    public static final int PILES = 4;
+    public static final int DECK_SIZE = 52;
+    public static final int MAX_COLUMN = 19;
+    public static final byte EMPTY = -1;
+    public static final int PACKED_SIZE = COLUMNS + CELLS + PILES + DECK_SIZE;
+    public static final int COMPACT_SIZE = DECK_SIZE;
+
+    /*
+     *   Zones of the game that a move can start from or end in.
+     */
+    public static final int COLUMN = 0;
+    public static final int FREE_CELL = 1;
+    public static final int REMOVE_PILE = 2;
+
+    /*
+     *   Results of checking a move, matching the messages shown by the GUI.
+     */
+    public static final int LEGAL = 0;
+    public static final int NOT_A_LEGAL_MOVE = 1;
+    public static final int NOT_ENOUGH_FREE_CELLS = 2;
+
+    private final byte [] cards = new byte [ COLUMNS * MAX_COLUMN ];
+    private final int [] lengths = new int [ COLUMNS ];
+    private final byte [] freeCells = new byte [ CELLS ];
+    private final byte [] removePiles = new byte [ PILES ];
+
+    /*
+     *   For each Card in a column, the length of the ordered run that ends with it:
+     *   1, plus the run of the Card under it if the Card may be placed there.  A Card
+     *   added to a column only needs the entry of the Card it covers, and taking Cards
+     *   off leaves the entries below them correct, so both cost O(1) a Card.  The
+     *   entry of the Card at the end of a column is how many Cards can be picked up.
+     */
+    private final byte [] runs = new byte [ COLUMNS * MAX_COLUMN ];
+    private long hash;
+    private final long [] runHashes = new long [ COLUMNS ];
+    private long cellHash;
+    private long pileHash;
+
+    /*
+     *   Zobrist keys: one random 64 bit number for each Card in each place it can be,
+     *   every column row, free cell, and remove pile.  The hash of a position is the
+     *   exclusive or of the keys of every Card where it lies, so a move only has to
+     *   take out the keys of the places its Cards leave and put in the keys of the
+     *   places they land.  The keys come from a fixed seed, so a position has the same
+     *   hash in every run and hashes can be stored.
+     */
+    private static final long [] COLUMN_KEYS =
+        new long [ COLUMNS * MAX_COLUMN * DECK_SIZE ];
+    private static final long [] CELL_KEYS = new long [ CELLS * DECK_SIZE ];
+    private static final long [] PILE_KEYS = new long [ PILES * DECK_SIZE ];
+
+    /*
+     *   Keys for the canonical hash, which ignores which free cell holds a Card, which
+     *   pile a suit was started on, and the order of the columns.  A column is hashed
+     *   with keys for each Card at each row but not for the column it is in, and the
+     *   free cells and remove piles with keys for each Card but not for its slot.
+     */
+    private static final long [] RUN_KEYS = new long [ MAX_COLUMN * DECK_SIZE ];
+    private static final long [] ANY_CELL_KEYS = new long [ DECK_SIZE ];
+    private static final long [] ANY_PILE_KEYS = new long [ DECK_SIZE ];
+
+    /*
+     *   For each Card, a mask with bit u set when the Card may be placed on the Card
+     *   with code u.  Every Card can go on exactly 2 others, so the whole rule for
+     *   building down in the playing area is a single table lookup.
+     */
+    private static final long [] STACKS_ON = new long [ DECK_SIZE ];
+
+    static
+    {
+        for( int top = 0; top < DECK_SIZE; top++ )
+        {
+            for( int under = 0; under < DECK_SIZE; under++ )
+            {
+                if( isRed( top ) != isRed( under ) &&
+                    rankOf( under ) - rankOf( top ) == 1 )
+                {
+                    STACKS_ON[ top ] |= 1L << under;
+                }
+            }
+        }
+    }
+
+    static
+    {
+        SplittableRandom random = new SplittableRandom( 0x5EEDFC52L );
+        for( int i = 0; i < COLUMN_KEYS.length; i++ )
+        {
+            COLUMN_KEYS[ i ] = random.nextLong();
+        }
+        for( int i = 0; i < CELL_KEYS.length; i++ )
+        {
+            CELL_KEYS[ i ] = random.nextLong();
+        }
+        for( int i = 0; i < PILE_KEYS.length; i++ )
+        {
+            PILE_KEYS[ i ] = random.nextLong();
+        }
+        for( int i = 0; i < RUN_KEYS.length; i++ )
+        {
+            RUN_KEYS[ i ] = random.nextLong();
+        }
+        for( int i = 0; i < DECK_SIZE; i++ )
+        {
+            ANY_CELL_KEYS[ i ] = random.nextLong();
+            ANY_PILE_KEYS[ i ] = random.nextLong();
+        }
+    }
+
+    /*
+     *   Constructor method.  Creates an empty Board with no Cards in the columns and
+     *   every free cell and remove pile empty.
+     */
+    public Board()
+    {
+        for( int i = 0; i < CELLS; i++ )
+        {
+            freeCells[ i ] = EMPTY;
+        }
+        for( int i = 0; i < PILES; i++ )
+        {
+            removePiles[ i ] = EMPTY;
+        }
+    }
+
+    /*
+     *   Copy constructor.  Creates an independent Board in the same position as the
+     *   one supplied.
+     *
+     *   @param       other          Board to copy
+     */
+    public Board( Board other )
+    {
+        copyFrom( other );
+    }
+
+    /*
+     *   Overwrite this Board with the position of another Board without allocating.
+     *
+     *   @param       other          Board to copy the position from
+     */
+    public void copyFrom( Board other )
+    {
+        System.arraycopy( other.cards, 0, cards, 0, cards.length );
+        System.arraycopy( other.runs, 0, runs, 0, runs.length );
+        System.arraycopy( other.lengths, 0, lengths, 0, COLUMNS );
+        System.arraycopy( other.freeCells, 0, freeCells, 0, CELLS );
+        System.arraycopy( other.removePiles, 0, removePiles, 0, PILES );
+        hash = other.hash;
+        System.arraycopy( other.runHashes, 0, runHashes, 0, COLUMNS );
+        cellHash = other.cellHash;
+        pileHash = other.pileHash;
+    }
+
+    /*
+     *   Start a new game by distributing a deck of 52 codes across the columns.  The
+     *   first card goes to the first row of the first column, the next to the first row
+     *   of the second column, and so on, wrapping to the next row after 8 columns,
+     *   exactly like FreeCell.dealCards.
+     *
+     *   @param       deck           byte [] of 52 card codes in dealing order
+     */
+    public void deal( byte [] deck )
+    {
+        for( int col = 0; col < COLUMNS; col++ )
+        {
+            lengths[ col ] = 0;
+        }
+        for( int i = 0; i < DECK_SIZE; i++ )
+        {
+            int col = i % COLUMNS;
+            cards[ col * MAX_COLUMN + lengths[ col ] ] = deck[ i ];
+            lengths[ col ]++;
+        }
+        for( int i = 0; i < CELLS; i++ )
+        {
+            freeCells[ i ] = EMPTY;
+        }
+        for( int i = 0; i < PILES; i++ )
+        {
+            removePiles[ i ] = EMPTY;
+        }
+        rehash();
+    }
+
+    /*
+     *   Zobrist hash of the position.  Kept up to date by every change to the Board,
+     *   so reading it costs nothing.  Two Boards in the same position always have the
+     *   same hash, and different positions almost never do, so solvers, caches, and
+     *   replay checks can use it as the key of a position.
+     *
+     *   @return                     long, 64 bit hash of the position
+     */
+    public long hash()
+    {
+        return hash;
+    }
+
+    /*
+     *   Work out the hash of the position from scratch, from every Card on the Board.
+     *   Used after the whole position is replaced, and useful to check that hash()
+     *   has been kept correct.
+     *
+     *   @return                     long, 64 bit hash of the position
+     */
+    public long computeHash()
+    {
+        long h = 0;
+        for( int col = 0; col < COLUMNS; col++ )
+        {
+            for( int row = 0; row < lengths[ col ]; row++ )
+            {
+                h ^= columnKey( col, row, cards[ col * MAX_COLUMN + row ] );
+            }
+        }
+        for( int i = 0; i < CELLS; i++ )
+        {
+            if( freeCells[ i ] != EMPTY )
+            {
+                h ^= CELL_KEYS[ i * DECK_SIZE + freeCells[ i ] ];
+            }
+        }
+        for( int i = 0; i < PILES; i++ )
+        {
+            if( removePiles[ i ] != EMPTY )
+            {
+                h ^= PILE_KEYS[ i * DECK_SIZE + removePiles[ i ] ];
+            }
+        }
+        return h;
+    }
+
+    /*
+     *   Hash of the position that is the same for every arrangement of it that plays
+     *   the same way: Cards swapped between free cells, suits on different remove
+     *   piles, or columns in a different order.  Solvers and position caches that key
+     *   on it treat all of those as one position, which can cut a search severalfold.
+     *   Each column's part of the hash is kept up to date by every move, and the parts
+     *   are mixed and added together, which does not depend on their order.
+     *
+     *   @return                     long, 64 bit canonical hash of the position
+     */
+    public long canonicalHash()
+    {
+        long h = cellHash + pileHash;
+        for( int col = 0; col < COLUMNS; col++ )
+        {
+            h += mix( runHashes[ col ] );
+        }
+        return h;
+    }
+
+    /*
+     *   Rearrange the Board into its canonical form: free cells sorted by card code
+     *   with the empty cells last, remove piles in Suit order, and columns sorted by
+     *   the code of their bottom Card with the empty columns last.  Every arrangement
+     *   with the same canonical hash ends up identical, so canonical positions can be
+     *   packed and compared byte for byte.  This moves Cards between slots, so use it
+     *   on a copy of a Board that is being shown or played.
+     */
+    public void canonicalize()
+    {
+        Arrays.sort( freeCells );
+        for( int i = 0, j = CELLS - 1; i < j; i++, j-- )
+        {
+            byte temp = freeCells[ i ];
+            freeCells[ i ] = freeCells[ j ];
+            freeCells[ j ] = temp;
+        }
+        byte [] bySuit = new byte [ PILES ];
+        Arrays.fill( bySuit, EMPTY );
+        for( byte pile : removePiles )
+        {
+            if( pile != EMPTY )
+            {
+                bySuit[ suitOf( pile ) ] = pile;
+            }
+        }
+        System.arraycopy( bySuit, 0, removePiles, 0, PILES );
+
+        /**
+         *   Insertion sort of the 8 columns, swapping whole rows of Cards.
+         */
+        byte [] row = new byte [ MAX_COLUMN ];
+        for( int i = 1; i < COLUMNS; i++ )
+        {
+            for( int j = i; j > 0 && columnOrder( j ) < columnOrder( j - 1 ); j-- )
+            {
+                int a = ( j - 1 ) * MAX_COLUMN;
+                int b = j * MAX_COLUMN;
+                System.arraycopy( cards, a, row, 0, MAX_COLUMN );
+                System.arraycopy( cards, b, cards, a, MAX_COLUMN );
+                System.arraycopy( row, 0, cards, b, MAX_COLUMN );
+                int length = lengths[ j - 1 ];
+                lengths[ j - 1 ] = lengths[ j ];
+                lengths[ j ] = length;
+            }
+        }
+        rehash();
+    }
+
+    /*
+     *   Sort key of a column for canonicalize: the code of its bottom Card, or past
+     *   every code if it is empty.
+     */
+    private int columnOrder( int col )
+    {
+        return lengths[ col ] == 0 ? DECK_SIZE : cards[ col * MAX_COLUMN ];
+    }
+
+    /*
+     *   Set the Zobrist hash, every part of the canonical hash, and the ordered runs
+     *   from scratch, after the whole position has been replaced.
+     */
+    private void rehash()
+    {
+        hash = computeHash();
+        cellHash = 0;
+        pileHash = 0;
+        for( int col = 0; col < COLUMNS; col++ )
+        {
+            runHashes[ col ] = 0;
+            for( int row = 0; row < lengths[ col ]; row++ )
+            {
+                runHashes[ col ] ^= runKey( row, cards[ col * MAX_COLUMN + row ] );
+                countRun( col * MAX_COLUMN + row, row );
+            }
+        }
+        for( int i = 0; i < CELLS; i++ )
+        {
+            if( freeCells[ i ] != EMPTY )
+            {
+                cellHash ^= ANY_CELL_KEYS[ freeCells[ i ] ];
+            }
+        }
+        for( int i = 0; i < PILES; i++ )
+        {
+            if( removePiles[ i ] != EMPTY )
+            {
+                pileHash ^= ANY_PILE_KEYS[ removePiles[ i ] ];
+            }
+        }
+    }
+
+    /*
+     *   Scramble a column's hash before adding it in, so the sum of the columns does
+     *   not let the keys of one column cancel those of another.
+     */
+    private static long mix( long h )
+    {
+        h = ( h ^ h >>> 33 ) * 0xFF51AFD7ED558CCDL;
+        h = ( h ^ h >>> 33 ) * 0xC4CEB9FE1A85EC53L;
+        return h ^ h >>> 33;
+    }
+
+    /*
+     *   Set the ordered run of the Card just placed at a slot of cards.
+     *
+     *   @param       at             index of the slot in cards
+     *   @param       row            integer index of its row
+     */
+    private void countRun( int at, int row )
+    {
+        runs[ at ] = row > 0 && canStack( cards[ at ], cards[ at - 1 ] ) ?
+                     ( byte ) ( runs[ at - 1 ] + 1 ) : 1;
+    }
+
+    private static long columnKey( int col, int row, int code )
+    {
+        return COLUMN_KEYS[ ( col * MAX_COLUMN + row ) * DECK_SIZE + code ];
+    }
+
+    private static long runKey( int row, int code )
+    {
+        return RUN_KEYS[ row * DECK_SIZE + code ];
+    }
+
+    /*
+     *   The following static methods describe a card code, from the tables of the
+     *   Cards class.
+     */
+
+    /*
+     *   @param       code           card code
+     *   @return                     integer value of the card's rank, 1 for Ace to 13
+     */
+    public static int rankOf( int code )
+    {
+        return Cards.rank( code );
+    }
+
+    /*
+     *   @param       code           card code
+     *   @return                     ordinal of the card's Suit
+     */
+    public static int suitOf( int code )
+    {
+        return Cards.suit( code );
+    }
+
+    /*
+     *   @param       code           card code
+     *   @return                     boolean, true if the card is red
+     */
+    public static boolean isRed( int code )
+    {
+        return Cards.isRed( code );
+    }
+
+    /*
+     *   Test whether the card in the first argument may be placed directly on top of
+     *   the card in the second: opposite color and exactly 1 rank lower.
+     *
+     *   @param       top            code of card being placed
+     *   @param       under          code of card it would cover
+     *   @return                     boolean, true if the pair is in order
+     */
+    public static boolean canStack( int top, int under )
+    {
+        return ( STACKS_ON[ top ] >>> under & 1L ) != 0;
+    }
+
+    /*
+     *   Basic getters for the contents of the Board.
+     */
+
+    /*
+     *   @param       col            integer index of column
+     *   @return                     number of Cards in the column
+     */
+    public int columnLength( int col )
+    {
+        return lengths[ col ];
+    }
+
+    /*
+     *   @param       col            integer index of column
+     *   @param       row            integer index of row, 0 is the bottom Card
+     *   @return                     code of the Card at that position
+     */
+    public byte cardAt( int col, int row )
+    {
+        return cards[ col * MAX_COLUMN + row ];
+    }
+
+    /*
+     *   Find the row of a Card in a column.
+     *
+     *   @param       col            integer index of column
+     *   @param       code           code of the Card
+     *   @return                     integer index of its row, or -1 if it is not there
+     */
+    public int rowOf( int col, int code )
+    {
+        for( int row = lengths[ col ] - 1; row >= 0; row-- )
+        {
+            if( cards[ col * MAX_COLUMN + row ] == code )
+            {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     *   @param       col            integer index of column
+     *   @return                     code of the Card at the end of the column, or EMPTY
+     */
+    public byte topCard( int col )
+    {
+        return lengths[ col ] == 0 ? EMPTY :
+               cards[ col * MAX_COLUMN + lengths[ col ] - 1 ];
+    }
+
+    /*
+     *   @param       i              integer index of free cell
+     *   @return                     code of the Card in the free cell, or EMPTY
+     */
+    public byte freeCell( int i )
+    {
+        return freeCells[ i ];
+    }
+
+    /*
+     *   @param       i              integer index of remove pile
+     *   @return                     code of the highest Card on the pile, or EMPTY
+     */
+    public byte removePile( int i )
+    {
+        return removePiles[ i ];
+    }
+
+    /*
+     *   Determine how many Cards are on top of the Card at a position.
+     *
+     *   @param       col            integer index of column
+     *   @param       row            integer index of row
+     *   @return                     number of Cards covering that position
+     */
+    public int cardsOnTop( int col, int row )
+    {
+        return lengths[ col ] - row - 1;
+    }
+
+    /*
+     *   Test if the Card at a position is covered only by Cards in descending rank and
+     *   alternating color order, which is when it lies within the ordered run at the
+     *   end of its column.
+     *
+     *   @param       col            integer index of column
+     *   @param       row            integer index of row
+     *   @return                     boolean, true if covered only by ordered Cards
+     */
+    public boolean topIsOrdered( int col, int row )
+    {
+        return lengths[ col ] - row <= orderedLength( col );
+    }
+
+    /*
+     *   Determine the number of free spaces available for a move of multiple ordered
+     *   Cards: empty free cells plus empty columns.
+     *
+     *   @return                     integer number of free spaces
+     */
+    public int getFreeCells()
+    {
+        int count = 0;
+        for( int col = 0; col < COLUMNS; col++ )
+        {
+            if( lengths[ col ] == 0 )
+            {
+                count++;
+            }
+        }
+        for( int i = 0; i < CELLS; i++ )
+        {
+            if( freeCells[ i ] == EMPTY )
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /*
+     *   Determine the most ordered Cards that may be moved to a column at once, as a
+     *   supermove.  With f empty free cells, f + 1 Cards can move by parking f of them
+     *   in the cells, and each empty column doubles that, since a run of that size can
+     *   be built in the column and the rest moved again.  So the limit is
+     *   ( f + 1 ) * 2^e for e empty columns, or ( f + 1 ) * 2^( e - 1 ) onto an empty
+     *   column, which cannot help with its own move.
+     *
+     *   @param       toEmptyColumn  boolean, true if the destination column is empty
+     *   @return                     integer number of Cards
+     */
+    public int maxMoveCount( boolean toEmptyColumn )
+    {
+        int cells = 0;
+        for( int i = 0; i < CELLS; i++ )
+        {
+            if( freeCells[ i ] == EMPTY )
+            {
+                cells++;
+            }
+        }
+        int columns = toEmptyColumn ? -1 : 0;
+        for( int col = 0; col < COLUMNS; col++ )
+        {
+            if( lengths[ col ] == 0 )
+            {
+                columns++;
+            }
+        }
+        return ( cells + 1 ) << columns;
+    }
+
+    /*
+     *   The game is won when every column is either empty or ordered all the way down
+     *   to its first Card.
+     *
+     *   @return                     boolean, true if game is won
+     */
+    public boolean isWon()
+    {
+        for( int col = 0; col < COLUMNS; col++ )
+        {
+            if( orderedLength( col ) != lengths[ col ] )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     *   Count the Cards at the end of a column that are in descending rank and
+     *   alternating color order, which is the most that could be picked up together.
+     *
+     *   @param       col            integer index of column
+     *   @return                     length of the ordered run, 0 for an empty column
+     */
+    public int orderedLength( int col )
+    {
+        return lengths[ col ] == 0 ? 0 : runs[ col * MAX_COLUMN + lengths[ col ] - 1 ];
+    }
+
+    /*
+     *   Count the Cards that have been moved to the remove piles.
+     *
+     *   @return                     integer number of Cards removed from play
+     */
+    public int cardsRemoved()
+    {
+        int count = 0;
+        for( int i = 0; i < PILES; i++ )
+        {
+            if( removePiles[ i ] != EMPTY )
+            {
+                count += rankOf( removePiles[ i ] );
+            }
+        }
+        return count;
+    }
+
+    /*
+     *   Find how high the remove pile of a suit has been built.
+     *
+     *   @param       suit           ordinal of the Suit
+     *   @return                     rank on top of that suit's pile, 0 if not started
+     */
+    public int pileRank( int suit )
+    {
+        for( int i = 0; i < PILES; i++ )
+        {
+            if( removePiles[ i ] != EMPTY && suitOf( removePiles[ i ] ) == suit )
+            {
+                return rankOf( removePiles[ i ] );
+            }
+        }
+        return 0;
+    }
+
+    /*
+     *   Find the remove pile a Card can go to next: the pile of its suit if the Card is
+     *   the next rank, or the first empty pile for an Ace.
+     *
+     *   @param       code           code of the Card
+     *   @return                     integer index of the pile, or -1 if there is none
+     */
+    public int pileFor( int code )
+    {
+        int firstEmpty = -1;
+        for( int i = 0; i < PILES; i++ )
+        {
+            byte pile = removePiles[ i ];
+            if( pile == EMPTY )
+            {
+                if( firstEmpty == -1 )
+                {
+                    firstEmpty = i;
+                }
+            }
+            else if( suitOf( pile ) == suitOf( code ) )
+            {
+                return rankOf( code ) - rankOf( pile ) == 1 ? i : -1;
+            }
+        }
+        return rankOf( code ) == 1 ? firstEmpty : -1;
+    }
+
+    /*
+     *   A Card is safe to remove when nothing left in play could ever need to be
+     *   placed on it: Aces and Twos always, and otherwise once both piles of the
+     *   opposite color have reached at least the rank just below it.
+     *
+     *   @param       code           code of the Card
+     *   @return                     boolean, true if removing it can never hurt
+     */
+    public boolean safeToRemove( int code )
+    {
+        int rank = rankOf( code );
+        if( rank <= 2 )
+        {
+            return true;
+        }
+        int suit = suitOf( code );
+        int other = ( suit + 1 ) & 3;
+        int another = ( suit + 3 ) & 3;
+        return pileRank( other ) >= rank - 1 && pileRank( another ) >= rank - 1;
+    }
+
+    /*
+     *   Write the position into a fixed sized byte Array: 8 column lengths, the 4 free
+     *   cells, the 4 remove piles, then the Cards of every column in order.  The same
+     *   position always packs to the same bytes.
+     *
+     *   @param       out            byte [] of at least PACKED_SIZE entries
+     */
+    public void pack( byte [] out )
+    {
+        int p = 0;
+        for( int col = 0; col < COLUMNS; col++ )
+        {
+            out[ p++ ] = ( byte ) lengths[ col ];
+        }
+        System.arraycopy( freeCells, 0, out, p, CELLS );
+        p += CELLS;
+        System.arraycopy( removePiles, 0, out, p, PILES );
+        p += PILES;
+        for( int col = 0; col < COLUMNS; col++ )
+        {
+            System.arraycopy( cards, col * MAX_COLUMN, out, p, lengths[ col ] );
+            p += lengths[ col ];
+        }
+        while( p < PACKED_SIZE )
+        {
+            out[ p++ ] = EMPTY;
+        }
+    }
+
+    /*
+     *   Restore a position written by pack.
+     *
+     *   @param       in             byte [] written by pack
+     */
+    public void unpack( byte [] in )
+    {
+        int p = 0;
+        for( int col = 0; col < COLUMNS; col++ )
+        {
+            lengths[ col ] = in[ p++ ];
+        }
+        System.arraycopy( in, p, freeCells, 0, CELLS );
+        p += CELLS;
+        System.arraycopy( in, p, removePiles, 0, PILES );
+        p += PILES;
+        for( int col = 0; col < COLUMNS; col++ )
+        {
+            System.arraycopy( in, p, cards, col * MAX_COLUMN, lengths[ col ] );
+            p += lengths[ col ];
+        }
+        rehash();
+    }
+
+    /*
+     *   Write the position into COMPACT_SIZE bytes, one for each Card by code, giving
+     *   the place it lies: col * MAX_COLUMN + row for a column, then the free cells,
+     *   then the remove piles, 160 places in all.  Smaller than pack, for positions
+     *   that are kept a long time rather than compared.
+     *
+     *   @param       out            byte [] to write to
+     *   @param       at             index in out of the first byte
+     */
+    public void packCompact( byte [] out, int at )
+    {
+        for( int col = 0; col < COLUMNS; col++ )
+        {
+            for( int row = 0; row < lengths[ col ]; row++ )
+            {
+                int slot = col * MAX_COLUMN + row;
+                out[ at + cards[ slot ] ] = ( byte ) slot;
+            }
+        }
+        for( int i = 0; i < CELLS; i++ )
+        {
+            if( freeCells[ i ] != EMPTY )
+            {
+                out[ at + freeCells[ i ] ] = ( byte ) ( COLUMNS * MAX_COLUMN + i );
+            }
+        }
+        for( int i = 0; i < PILES; i++ )
+        {
+            /**
+             *   A pile holds its top Card and every lower rank of the same suit.
+             */
+            int top = removePiles[ i ];
+            if( top == EMPTY )
+            {
+                continue;
+            }
+            for( int code = top - rankOf( top ) + 1; code <= top; code++ )
+            {
+                out[ at + code ] = ( byte ) ( COLUMNS * MAX_COLUMN + CELLS + i );
+            }
+        }
+    }
+
+    /*
+     *   Restore a position written by packCompact.
+     *
+     *   @param       in             byte [] written by packCompact
+     *   @param       at             index in the first byte
+     */
+    public void unpackCompact( byte [] in, int at )
+    {
+        Arrays.fill( lengths, 0 );
+        Arrays.fill( freeCells, EMPTY );
+        Arrays.fill( removePiles, EMPTY );
+        for( int code = 0; code < DECK_SIZE; code++ )
+        {
+            int place = in[ at + code ] & 0xFF;
+            if( place < COLUMNS * MAX_COLUMN )
+            {
+                int col = place / MAX_COLUMN;
+                cards[ place ] = ( byte ) code;
+                lengths[ col ] = Math.max( lengths[ col ], place - col * MAX_COLUMN + 1 );
+            }
+            else if( place < COLUMNS * MAX_COLUMN + CELLS )
+            {
+                freeCells[ place - COLUMNS * MAX_COLUMN ] = ( byte ) code;
+            }
+            else
+            {
+                /**
+                 *   Codes of a suit rise with rank, so the last one seen is the top.
+                 */
+                removePiles[ place - COLUMNS * MAX_COLUMN - CELLS ] = ( byte ) code;
+            }
+        }
+        rehash();
+    }
+
+    /*
+     *   Find the code of the lowest Card in a move, the one whose position decides
+     *   where the move may go.
+     *
+     *   @param       srcZone        COLUMN or FREE_CELL
+     *   @param       srcIndex       integer index of column or free cell
+     *   @param       count          number of Cards moving
+     *   @return                     code of the lowest moving Card, or EMPTY
+     */
+    private byte movingCard( int srcZone, int srcIndex, int count )
+    {
+        if( srcZone == FREE_CELL )
+        {
+            return count == 1 ? freeCells[ srcIndex ] : EMPTY;
+        }
+        if( srcZone == COLUMN && count >= 1 && count <= lengths[ srcIndex ] )
+        {
+            return cards[ srcIndex * MAX_COLUMN + lengths[ srcIndex ] - count ];
+        }
+        return EMPTY;
+    }
+
+    /*
+     *   Check a move against the rules the GUI has always enforced in its source
+     *   methods.  A move takes the top count Cards of a column, or the single Card in a
+     *   free cell, and places them in a destination zone.
+     *
+     *   Onto a Card in the playing area the moving Cards must be ordered, the lowest
+     *   must be of opposite color and exactly 1 rank lower than the destination, and
+     *   there must be room for a supermove of that many Cards, as given by
+     *   maxMoveCount.  An empty column takes any ordered run that fits.  A free cell
+     *   takes any single Card if it is empty, and a remove pile takes an Ace when
+     *   empty, otherwise the next rank of the same suit.  Only the Card at the end of
+     *   a column can go to a remove pile.
+     *
+     *   @param       srcZone        COLUMN or FREE_CELL
+     *   @param       srcIndex       integer index of column or free cell
+     *   @param       count          number of Cards moving
+     *   @param       destZone       COLUMN, FREE_CELL, or REMOVE_PILE
+     *   @param       destIndex      integer index in destination zone
+     *   @return                     LEGAL, NOT_A_LEGAL_MOVE, or NOT_ENOUGH_FREE_CELLS
+     */
+    public int check( int srcZone, int srcIndex, int count, int destZone, int destIndex )
+    {
+        byte moving = movingCard( srcZone, srcIndex, count );
+        if( moving == EMPTY || ( srcZone == destZone && srcIndex == destIndex ) )
+        {
+            return NOT_A_LEGAL_MOVE;
+        }
+        if( srcZone == COLUMN &&
+            ! topIsOrdered( srcIndex, lengths[ srcIndex ] - count ) )
+        {
+            return NOT_A_LEGAL_MOVE;
+        }
+        if( destZone == COLUMN )
+        {
+            byte destination = topCard( destIndex );
+            if( destination != EMPTY && ! canStack( moving, destination ) )
+            {
+                return NOT_A_LEGAL_MOVE;
+            }
+            return count <= maxMoveCount( destination == EMPTY ) ? LEGAL :
+                   NOT_ENOUGH_FREE_CELLS;
+        }
+        if( destZone == FREE_CELL )
+        {
+            return count == 1 && freeCells[ destIndex ] == EMPTY ? LEGAL :
+                   NOT_A_LEGAL_MOVE;
+        }
+        if( destZone == REMOVE_PILE && count == 1 )
+        {
+            byte pile = removePiles[ destIndex ];
+            if( pile == EMPTY )
+            {
+                return rankOf( moving ) == 1 ? LEGAL : NOT_A_LEGAL_MOVE;
+            }
+            return suitOf( pile ) == suitOf( moving ) &&
+                   rankOf( moving ) - rankOf( pile ) == 1 ? LEGAL : NOT_A_LEGAL_MOVE;
+        }
+        return NOT_A_LEGAL_MOVE;
+    }
+
+    /*
+     *   Convenience form of check for callers that only need a yes or no.
+     *
+     *   @return                     boolean, true if check returns LEGAL
+     */
+    public boolean canMove( int srcZone, int srcIndex, int count, int destZone,
+                            int destIndex )
+    {
+        return check( srcZone, srcIndex, count, destZone, destIndex ) == LEGAL;
+    }
+
+    /*
+     *   Execute a move without testing it.  Callers are expected to have called check
+     *   first.  A run of Cards moves between columns as one block copy, with no
+     *   shifting, and the hash is updated for just the Cards that moved.  A remove
+     *   pile is never a legal source, but the top Card can be taken off one to undo a
+     *   move, leaving the Card below it, or nothing under an Ace.
+     *
+     *   @param       srcZone        COLUMN, FREE_CELL, or REMOVE_PILE
+     *   @param       srcIndex       integer index of column or free cell
+     *   @param       count          number of Cards moving
+     *   @param       destZone       COLUMN, FREE_CELL, or REMOVE_PILE
+     *   @param       destIndex      integer index in destination zone
+     */
+    public void move( int srcZone, int srcIndex, int count, int destZone, int destIndex )
+    {
+        if( srcZone == COLUMN && destZone == COLUMN )
+        {
+            int srcRow = lengths[ srcIndex ] - count;
+            int destRow = lengths[ destIndex ];
+            int from = srcIndex * MAX_COLUMN + srcRow;
+            for( int k = 0; k < count; k++ )
+            {
+                byte c = cards[ from + k ];
+                hash ^= columnKey( srcIndex, srcRow + k, c ) ^
+                        columnKey( destIndex, destRow + k, c );
+                runHashes[ srcIndex ] ^= runKey( srcRow + k, c );
+                runHashes[ destIndex ] ^= runKey( destRow + k, c );
+            }
+            System.arraycopy( cards, from, cards, destIndex * MAX_COLUMN + destRow,
+                              count );
+            for( int k = 0; k < count; k++ )
+            {
+                countRun( destIndex * MAX_COLUMN + destRow + k, destRow + k );
+            }
+            lengths[ srcIndex ] = srcRow;
+            lengths[ destIndex ] += count;
+            return;
+        }
+        byte moving;
+        if( srcZone == FREE_CELL )
+        {
+            moving = freeCells[ srcIndex ];
+            freeCells[ srcIndex ] = EMPTY;
+            hash ^= CELL_KEYS[ srcIndex * DECK_SIZE + moving ];
+            cellHash ^= ANY_CELL_KEYS[ moving ];
+        }
+        else if( srcZone == REMOVE_PILE )
+        {
+            moving = removePiles[ srcIndex ];
+            hash ^= PILE_KEYS[ srcIndex * DECK_SIZE + moving ];
+            pileHash ^= ANY_PILE_KEYS[ moving ];
+            byte below = rankOf( moving ) == 1 ? EMPTY : ( byte ) ( moving - 1 );
+            removePiles[ srcIndex ] = below;
+            if( below != EMPTY )
+            {
+                hash ^= PILE_KEYS[ srcIndex * DECK_SIZE + below ];
+                pileHash ^= ANY_PILE_KEYS[ below ];
+            }
+        }
+        else
+        {
+            lengths[ srcIndex ]--;
+            moving = cards[ srcIndex * MAX_COLUMN + lengths[ srcIndex ] ];
+            hash ^= columnKey( srcIndex, lengths[ srcIndex ], moving );
+            runHashes[ srcIndex ] ^= runKey( lengths[ srcIndex ], moving );
+        }
+        if( destZone == COLUMN )
+        {
+            cards[ destIndex * MAX_COLUMN + lengths[ destIndex ] ] = moving;
+            countRun( destIndex * MAX_COLUMN + lengths[ destIndex ],
+                      lengths[ destIndex ] );
+            hash ^= columnKey( destIndex, lengths[ destIndex ], moving );
+            runHashes[ destIndex ] ^= runKey( lengths[ destIndex ], moving );
+            lengths[ destIndex ]++;
+        }
+        else if( destZone == FREE_CELL )
+        {
+            freeCells[ destIndex ] = moving;
+            hash ^= CELL_KEYS[ destIndex * DECK_SIZE + moving ];
+            cellHash ^= ANY_CELL_KEYS[ moving ];
+        }
+        else
+        {
+            if( removePiles[ destIndex ] != EMPTY )
+            {
+                hash ^= PILE_KEYS[ destIndex * DECK_SIZE + removePiles[ destIndex ] ];
+                pileHash ^= ANY_PILE_KEYS[ removePiles[ destIndex ] ];
+            }
+            removePiles[ destIndex ] = moving;
+            hash ^= PILE_KEYS[ destIndex * DECK_SIZE + moving ];
+            pileHash ^= ANY_PILE_KEYS[ moving ];
+        }
+    }
+
+    /*
+     *   Forms of check and move that take a packed move from the Moves class.
+     */
+
+    public int check( int move )
+    {
+        return check( Moves.srcZone( move ), Moves.srcIndex( move ), Moves.count( move ),
+                      Moves.destZone( move ), Moves.destIndex( move ) );
+    }
+
+    public void move( int move )
+    {
+        move( Moves.srcZone( move ), Moves.srcIndex( move ), Moves.count( move ),
+              Moves.destZone( move ), Moves.destIndex( move ) );
+    }
+
+    /*
+     *   Check a move and execute it only if it is legal.
+     *
+     *   @return                     LEGAL, NOT_A_LEGAL_MOVE, or NOT_ENOUGH_FREE_CELLS
+     */
+    public int tryMove( int srcZone, int srcIndex, int count, int destZone,
+                        int destIndex )
+    {
+        int result = check( srcZone, srcIndex, count, destZone, destIndex );
+        if( result == LEGAL )
+        {
+            move( srcZone, srcIndex, count, destZone, destIndex );
+        }
+        return result;
+    }
+}
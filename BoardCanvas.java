@@ -0,0 +1,595 @@
+/************
+ *
+ *    Custom-painted view of a FreeCell board.  Draws the free cells, remove piles,
+ *    and every column in one component, from a cached atlas of card images.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.*;
+import java.util.function.*;
+
+/*
+ *   BoardCanvas replaces the Card buttons, placeholder buttons, and nested panels of
+ *   the FreeCell window with a single component.  It lays nothing out: the place of
+ *   every card is worked out from the size of the component, and a click is turned
+ *   into a place on the board by arithmetic on its coordinates.
+ *
+ *   Every card face, and the 3 kinds of empty place, is drawn once into an atlas
+ *   image when the size of the cards is first known or changes.  Painting is then a
+ *   copy from the atlas for each card inside the area being repainted, and nothing
+ *   else.  When the board changes, only the areas of the places that changed are
+ *   repainted.
+ *
+ *   Cards that change place slide from where they were shown to where they now are.
+ *   A Swing Timer repaints at 60 frames a second while any card is moving, and each
+ *   frame repaints only the area the moving cards cover.
+ */
+@SuppressWarnings( "serial" )
+public class BoardCanvas extends JComponent
+{
+    /*
+     *   Receives clicks on the board.
+     */
+    public interface Listener
+    {
+        /*
+         *   @param       zone           COLUMN, FREE_CELL, or REMOVE_PILE of Board
+         *   @param       index          integer index of the column, cell, or pile
+         *   @param       code           code of the Card clicked, or -1 if empty
+         */
+        void clicked( int zone, int index, int code );
+    }
+
+    private static final int MARGIN = 8;
+    private static final int GAP = 6;
+    private static final int FRAME_MILLIS = 16;
+    private static final long SLIDE_NANOS = 150000000L;
+    private static final Color HIGHLIGHT = new Color( 255, 200, 0 );
+
+    /*
+     *   Atlas slots after the 52 cards.
+     */
+    private static final int FREE_FACE = Cards.COUNT;
+    private static final int PILE_FACE = Cards.COUNT + 1;
+    private static final int COLUMN_FACE = Cards.COUNT + 2;
+    private static final int FACES = Cards.COUNT + 3;
+
+    private final Board board;
+    private Listener listener;
+    private IntSupplier selection = () -> -1;
+
+    /*
+     *   Geometry, worked out again whenever the size changes.  Columns fan their Cards
+     *   downward by step pixels, enough to fit the longest column possible.
+     */
+    private int width;
+    private int height;
+    private int cardWidth;
+    private int cardHeight;
+    private int step;
+    private int tableauTop;
+    private BufferedImage atlas;
+
+    /*
+     *   Where each Card was last placed, and where it is sliding from.  A Card is moving
+     *   while now is before its slide ends.
+     */
+    private final int [] shownX = new int [ Cards.COUNT ];
+    private final int [] shownY = new int [ Cards.COUNT ];
+    private final int [] fromX = new int [ Cards.COUNT ];
+    private final int [] fromY = new int [ Cards.COUNT ];
+    private final long [] slideEnds = new long [ Cards.COUNT ];
+    private final boolean [] placed = new boolean [ Cards.COUNT ];
+    private final Rectangle frameArea = new Rectangle( 0, 0, -1, -1 );
+    private final Timer timer = new Timer( FRAME_MILLIS, e -> nextFrame() );
+    private boolean animate = true;
+    private int lastSelected = -1;
+
+    /*
+     *   Constructor method.
+     *
+     *   @param       board          Board to show, read but never changed
+     */
+    public BoardCanvas( Board board )
+    {
+        this.board = board;
+        setOpaque( true );
+        setBackground( new Color( 0, 110, 50 ) );
+        setPreferredSize( new Dimension( 1000, 850 ) );
+        addMouseListener( new MouseAdapter()
+        {
+            public void mousePressed( MouseEvent e )
+            {
+                click( e.getX(), e.getY() );
+            }
+        } );
+    }
+
+    /*
+     *   Basic setter.  The listener hears every click on a place of the board.
+     *
+     *   @param       l              Listener, or null for none
+     */
+    public void setListener( Listener l )
+    {
+        listener = l;
+    }
+
+    /*
+     *   Basic setter.  The selection is asked for the code of the selected Card, or -1
+     *   for none, whenever the canvas paints, and that Card is highlighted.
+     *
+     *   @param       s              IntSupplier of the selected code
+     */
+    public void setSelection( IntSupplier s )
+    {
+        selection = s;
+    }
+
+    /*
+     *   Basic setter.  Turns the sliding of Cards that move on or off.
+     *
+     *   @param       on             boolean, true to animate moves
+     */
+    public void setAnimated( boolean on )
+    {
+        animate = on;
+    }
+
+    /*
+     *   Show the whole board as it is, with no Card sliding, such as after a deal.
+     */
+    public void showAll()
+    {
+        for( int code = 0; code < Cards.COUNT; code++ )
+        {
+            placed[ code ] = false;
+            slideEnds[ code ] = 0;
+        }
+        timer.stop();
+        repaint();
+    }
+
+    /*
+     *   Repaint the places that changed.  Cards whose place changed slide there.
+     *
+     *   @param       columns        bit col set for each column that changed
+     *   @param       cells          boolean, true if the free cells changed
+     *   @param       piles          boolean, true if the remove piles changed
+     */
+    public void changed( int columns, boolean cells, boolean piles )
+    {
+        if( ! fitSize() )
+        {
+            repaint();
+            return;
+        }
+        long now = System.nanoTime();
+        for( int col = 0; col < Board.COLUMNS; col++ )
+        {
+            if( ( columns & 1 << col ) != 0 )
+            {
+                repaint( columnX( col ), tableauTop, cardWidth, height - tableauTop );
+                for( int row = 0; row < board.columnLength( col ); row++ )
+                {
+                    place( board.cardAt( col, row ), columnX( col ),
+                           tableauTop + row * step, now );
+                }
+            }
+        }
+        for( int i = 0; i < Board.CELLS; i++ )
+        {
+            if( cells )
+            {
+                repaint( columnX( i ), MARGIN, cardWidth, cardHeight );
+                byte card = board.freeCell( i );
+                if( card != Board.EMPTY )
+                {
+                    place( card, columnX( i ), MARGIN, now );
+                }
+            }
+            if( piles )
+            {
+                repaint( pileX( i ), MARGIN, cardWidth, cardHeight );
+                byte card = board.removePile( i );
+                if( card != Board.EMPTY )
+                {
+                    place( card, pileX( i ), MARGIN, now );
+                }
+            }
+        }
+        if( ! frameArea.isEmpty() && ! timer.isRunning() )
+        {
+            timer.start();
+        }
+    }
+
+    /*
+     *   Note where a Card now is.  If it was shown somewhere else, it starts to slide
+     *   from wherever it is drawn at the moment.
+     */
+    private void place( int code, int x, int y, long now )
+    {
+        if( placed[ code ] && animate && ( shownX[ code ] != x || shownY[ code ] != y ) )
+        {
+            int atX = drawnX( code, now );
+            int atY = drawnY( code, now );
+            fromX[ code ] = atX;
+            fromY[ code ] = atY;
+            slideEnds[ code ] = now + SLIDE_NANOS;
+            frameArea.add( new Rectangle( atX, atY, cardWidth, cardHeight ) );
+            frameArea.add( new Rectangle( x, y, cardWidth, cardHeight ) );
+        }
+        shownX[ code ] = x;
+        shownY[ code ] = y;
+        placed[ code ] = true;
+    }
+
+    /*
+     *   How far along its slide a Card is at a moment, from 0 to 1.  The slide eases
+     *   out, fast at first and slowing to a stop.
+     */
+    private double progress( int code, long now )
+    {
+        long left = slideEnds[ code ] - now;
+        if( left <= 0 )
+        {
+            return 1.0;
+        }
+        double rest = ( double ) left / SLIDE_NANOS;
+        return 1.0 - rest * rest;
+    }
+
+    /*
+     *   Where a Card is drawn at a moment, part way along its slide if it is moving.
+     */
+    private int drawnX( int code, long now )
+    {
+        return fromX[ code ] + ( int ) Math.round( ( shownX[ code ] - fromX[ code ] ) *
+                                                   progress( code, now ) );
+    }
+
+    private int drawnY( int code, long now )
+    {
+        return fromY[ code ] + ( int ) Math.round( ( shownY[ code ] - fromY[ code ] ) *
+                                                   progress( code, now ) );
+    }
+
+    /*
+     *   Repaint the area the moving Cards cover, and stop the Timer once none is moving.
+     */
+    private void nextFrame()
+    {
+        long now = System.nanoTime();
+        boolean moving = false;
+        for( int code = 0; code < Cards.COUNT && ! moving; code++ )
+        {
+            moving = slideEnds[ code ] > now;
+        }
+        repaint( frameArea.x, frameArea.y, frameArea.width, frameArea.height );
+        if( ! moving )
+        {
+            frameArea.setBounds( 0, 0, -1, -1 );
+            timer.stop();
+        }
+    }
+
+    /*
+     *   Work out the geometry for the current size, and draw the atlas again if the
+     *   size of the cards changed.
+     *
+     *   @return                     boolean, true if there is room to draw the board
+     */
+    private boolean fitSize()
+    {
+        if( getWidth() == width && getHeight() == height && atlas != null )
+        {
+            return true;
+        }
+        width = getWidth();
+        height = getHeight();
+        int w = ( width - 2 * MARGIN - ( Board.COLUMNS - 1 ) * GAP ) / Board.COLUMNS;
+        tableauTop = 0;
+        if( w < 8 || height < 8 )
+        {
+            atlas = null;
+            return false;
+        }
+        int h = Math.min( w * 7 / 5, height / 5 );
+        tableauTop = MARGIN + h + 3 * GAP;
+        int room = height - tableauTop - MARGIN - h;
+        step = Math.max( 4, Math.min( h / 4, room / ( Board.MAX_COLUMN - 1 ) ) );
+        if( atlas == null || w != cardWidth || h != cardHeight )
+        {
+            cardWidth = w;
+            cardHeight = h;
+            atlas = drawAtlas( w, h );
+        }
+        for( int code = 0; code < Cards.COUNT; code++ )
+        {
+            placed[ code ] = false;
+            slideEnds[ code ] = 0;
+        }
+        return true;
+    }
+
+    /*
+     *   Draw every card face and empty place once, in a row of 55 images.  The image
+     *   is opaque, with the background already behind the rounded corners, and made
+     *   compatible with the screen when there is one, so copying from it is a plain
+     *   block copy with no blending.
+     */
+    private BufferedImage drawAtlas( int w, int h )
+    {
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        BufferedImage image = gc != null ?
+            gc.createCompatibleImage( w * FACES, h ) :
+            new BufferedImage( w * FACES, h, BufferedImage.TYPE_INT_RGB );
+        Graphics2D g = image.createGraphics();
+        g.setColor( getBackground() );
+        g.fillRect( 0, 0, w * FACES, h );
+        g.setRenderingHint( RenderingHints.KEY_ANTIALIASING,
+                            RenderingHints.VALUE_ANTIALIAS_ON );
+        g.setRenderingHint( RenderingHints.KEY_TEXT_ANTIALIASING,
+                            RenderingHints.VALUE_TEXT_ANTIALIAS_ON );
+        int arc = Math.max( 4, w / 8 );
+        Font corner = new Font( "Helvetica", Font.BOLD, Math.max( 8, step - 6 ) );
+        Font middle = new Font( "Helvetica", Font.PLAIN, Math.max( 10, h / 3 ) );
+        for( int face = 0; face < FACES; face++ )
+        {
+            int x = face * w;
+            if( face < Cards.COUNT )
+            {
+                g.setColor( Color.WHITE );
+                g.fillRoundRect( x, 0, w - 1, h - 1, arc, arc );
+                g.setColor( Color.DARK_GRAY );
+                g.drawRoundRect( x, 0, w - 1, h - 1, arc, arc );
+                g.setColor( Cards.isRed( face ) ? Color.RED : Color.BLACK );
+                g.setFont( corner );
+                g.drawString( Cards.name( face ), x + 4, corner.getSize() + 1 );
+                g.setFont( middle );
+                String suit = Cards.suitOf( face ).abbr();
+                FontMetrics fm = g.getFontMetrics();
+                g.drawString( suit, x + ( w - fm.stringWidth( suit ) ) / 2,
+                              h / 2 + fm.getAscent() / 2 );
+                continue;
+            }
+            g.setColor( new Color( 255, 255, 255, 60 ) );
+            g.drawRoundRect( x + 1, 1, w - 3, h - 3, arc, arc );
+            String label = face == FREE_FACE ? "FREE" : face == PILE_FACE ? "ACE" : "";
+            g.setFont( corner );
+            FontMetrics fm = g.getFontMetrics();
+            g.drawString( label, x + ( w - fm.stringWidth( label ) ) / 2, h / 2 );
+        }
+        g.dispose();
+        return image;
+    }
+
+    private int columnX( int col )
+    {
+        return MARGIN + col * ( cardWidth + GAP );
+    }
+
+    private int pileX( int i )
+    {
+        return columnX( Board.COLUMNS - Board.PILES + i );
+    }
+
+    /*
+     *   Paint the board inside the clip: the empty places, every Card that is still,
+     *   then every Card that is moving, on top of the rest.
+     */
+    protected void paintComponent( Graphics graphics )
+    {
+        long began = System.nanoTime();
+        Graphics2D g = ( Graphics2D ) graphics;
+        Rectangle clip = g.getClipBounds();
+        if( clip == null )
+        {
+            clip = new Rectangle( 0, 0, getWidth(), getHeight() );
+        }
+        g.setColor( getBackground() );
+        g.fillRect( clip.x, clip.y, clip.width, clip.height );
+        if( ! fitSize() )
+        {
+            return;
+        }
+        long now = System.nanoTime();
+        for( int pass = 0; pass < 2; pass++ )
+        {
+            boolean moving = pass == 1;
+            for( int i = 0; i < Board.CELLS; i++ )
+            {
+                paintSlot( g, clip, board.freeCell( i ), columnX( i ), FREE_FACE, moving,
+                           now );
+                byte pile = board.removePile( i );
+                if( ! moving && pile != Board.EMPTY && slideEnds[ pile ] > now )
+                {
+                    /**
+                     *   The Card arriving is still on its way, so the pile shows the
+                     *   Card below it.
+                     */
+                    pile = Cards.rank( pile ) == 1 ? Board.EMPTY : ( byte ) ( pile - 1 );
+                }
+                paintSlot( g, clip, pile, pileX( i ), PILE_FACE, moving, now );
+            }
+            for( int col = 0; col < Board.COLUMNS; col++ )
+            {
+                int length = board.columnLength( col );
+                if( length == 0 && ! moving )
+                {
+                    paintFace( g, clip, COLUMN_FACE, columnX( col ), tableauTop,
+                               cardHeight );
+                }
+                for( int row = 0; row < length; row++ )
+                {
+                    /**
+                     *   A Card covered by a still Card shows only its top strip, so
+                     *   only the strip is copied.
+                     */
+                    boolean covered = row < length - 1 &&
+                                      slideEnds[ board.cardAt( col, row + 1 ) ] <= now;
+                    paintCard( g, clip, board.cardAt( col, row ), moving, now,
+                               covered ? step : cardHeight );
+                }
+            }
+        }
+        int chosen = selection.getAsInt();
+        if( chosen >= 0 && placed[ chosen ] )
+        {
+            g.setColor( HIGHLIGHT );
+            g.setStroke( new BasicStroke( 3 ) );
+            int arc = cardWidth / 8;
+            g.drawRoundRect( drawnX( chosen, now ) + 1, drawnY( chosen, now ) + 1,
+                             cardWidth - 3, cardHeight - 3, arc, arc );
+        }
+        Metrics.PAINT.record( System.nanoTime() - began );
+    }
+
+    /*
+     *   Paint a free cell or remove pile: its Card, or its empty place.
+     */
+    private void paintSlot( Graphics2D g, Rectangle clip, byte card, int x, int empty,
+                            boolean moving, long now )
+    {
+        if( card != Board.EMPTY && placed[ card ] )
+        {
+            paintCard( g, clip, card, moving, now, cardHeight );
+        }
+        else if( ! moving )
+        {
+            int face = card == Board.EMPTY ? empty : card;
+            paintFace( g, clip, face, x, MARGIN, cardHeight );
+        }
+    }
+
+    /*
+     *   Paint a Card where it is drawn now, in the pass for still or moving Cards.
+     *   A Card not placed yet is placed first, without sliding.  A moving Card is
+     *   always drawn whole.
+     */
+    private void paintCard( Graphics2D g, Rectangle clip, int code, boolean moving,
+                            long now, int visible )
+    {
+        if( ( slideEnds[ code ] > now ) != moving )
+        {
+            return;
+        }
+        if( ! placed[ code ] )
+        {
+            placeAll();
+        }
+        paintFace( g, clip, code, drawnX( code, now ), drawnY( code, now ),
+                   moving ? cardHeight : visible );
+    }
+
+    /*
+     *   Copy the top of one face of the atlas to the board, if any of it is inside the
+     *   clip.
+     *
+     *   @param       h              number of rows of the face to copy
+     */
+    private void paintFace( Graphics2D g, Rectangle clip, int face, int x, int y, int h )
+    {
+        if( x >= clip.x + clip.width || y >= clip.y + clip.height ||
+            x + cardWidth <= clip.x || y + h <= clip.y )
+        {
+            return;
+        }
+        int sx = face * cardWidth;
+        g.drawImage( atlas, x, y, x + cardWidth, y + h, sx, 0, sx + cardWidth, h, null );
+    }
+
+    /*
+     *   Note the place of every Card on the board, with no sliding.
+     */
+    private void placeAll()
+    {
+        for( int col = 0; col < Board.COLUMNS; col++ )
+        {
+            for( int row = 0; row < board.columnLength( col ); row++ )
+            {
+                place( board.cardAt( col, row ), columnX( col ), tableauTop + row * step,
+                       0 );
+            }
+        }
+        for( int i = 0; i < Board.CELLS; i++ )
+        {
+            if( board.freeCell( i ) != Board.EMPTY )
+            {
+                place( board.freeCell( i ), columnX( i ), MARGIN, 0 );
+            }
+            if( board.removePile( i ) != Board.EMPTY )
+            {
+                place( board.removePile( i ), pileX( i ), MARGIN, 0 );
+            }
+        }
+    }
+
+    /*
+     *   Find the place of the board at a point, and tell the listener.  A point in a
+     *   column finds the Card whose visible strip it is in, or the last Card if it is
+     *   on the part of that Card below the others.  The selected Card is repainted
+     *   before and after, since the click may change it.
+     *
+     *   @param       x              integer x coordinate in the component
+     *   @param       y              integer y coordinate in the component
+     */
+    public void click( int x, int y )
+    {
+        if( listener == null || ! fitSize() )
+        {
+            return;
+        }
+        int slot = ( x - MARGIN ) / ( cardWidth + GAP );
+        if( x < MARGIN || slot >= Board.COLUMNS || x - columnX( slot ) >= cardWidth )
+        {
+            return;
+        }
+        if( y >= MARGIN && y < MARGIN + cardHeight )
+        {
+            if( slot < Board.CELLS )
+            {
+                byte card = board.freeCell( slot );
+                notify( Board.FREE_CELL, slot, card );
+            }
+            else
+            {
+                int pile = slot - ( Board.COLUMNS - Board.PILES );
+                notify( Board.REMOVE_PILE, pile, board.removePile( pile ) );
+            }
+            return;
+        }
+        int length = board.columnLength( slot );
+        int bottom = tableauTop + Math.max( 0, length - 1 ) * step + cardHeight;
+        if( y < tableauTop || y >= bottom )
+        {
+            return;
+        }
+        int row = Math.min( ( y - tableauTop ) / step, length - 1 );
+        byte card = length == 0 ? Board.EMPTY : board.cardAt( slot, row );
+        notify( Board.COLUMN, slot, card );
+    }
+
+    private void notify( int zone, int index, int code )
+    {
+        repaintSelected( lastSelected );
+        listener.clicked( zone, index, code );
+        lastSelected = selection.getAsInt();
+        repaintSelected( lastSelected );
+    }
+
+    private void repaintSelected( int code )
+    {
+        if( code >= 0 && placed[ code ] )
+        {
+            repaint( shownX[ code ], shownY[ code ], cardWidth, cardHeight );
+        }
+    }
+}
@@ -1,8 +1,9 @@
 /************
  *
- *    Card class for FreeCell game or other games involving playing cards.  Relies
- *    on a file of 3 Enumerated types: Rank, Suit, and Clr (Color).  Contains constructor,
- *    basic getters and setters, and some methods specific to the game Free Cell.
+ *    Card class for FreeCell game or other games involving playing cards.  A Card is
+ *    the button that shows one card on screen; the card itself is a code from the
+ *    Cards class, which relies on a file of 3 Enumerated types: Rank, Suit, and Clr
+ *    (Color).
  *
  *    @author  Jeff Winning
  *    @version   Last modified 5.2.16
@@ -11,81 +12,49 @@
 
 import javax.swing.*;
 import java.awt.*;
-import java.awt.event.*;
-import java.util.*;
 
 /*
- *   Card class is a template for a playing card Object, specialized for Free Cell
- *   Solitaire in this implementation, but could be used for other games and programs
- *   requiring playing cards with little or no
+ *   Card class is a view of a playing card, specialized for Free Cell Solitaire in
+ *   this implementation.  It holds only the code of the card it shows, which never
+ *   changes, and reads everything else from the tables of the Cards class.  Where
+ *   the Card is on the board is not kept here; the game knows that from its Board.
  */
 public class Card extends JButton
 {
-    /*
-     *     Instance variables.
-     *     Think about whether these need to be in class level or constructor level
-     *     If it will still work from constructor, that is better.
-     */
-    private Rank cardRank;   
-    private Suit cardSuit;
-    private Clr cardColor;
-    private int row;
-    private int col;
+    private final byte code;
     
     /*
-     *   Constructor method.  Takes Suit and Rank as parameters, and stores in instance
-     *   variables.  Determine's Clr (color) based on Suit, and sets foreground color of
-     *   Card accordingly.  Finally, calls toString() method as part of setText(), which
-     *   is inherited from JButton.
+     *   Constructor method.  Takes the code of the card to show.  Sets the foreground
+     *   color of the Card from the card's color, and its text from the card's name.
      *
-     *   @param        theSuit            Suit enum of the new Card
-     *   @param        theRank            Rank enum of the new Card
+     *   @param        code               byte code of the card, 0 - 51
      */
-    public Card( Suit theSuit, Rank theRank )
+    public Card( byte code )
     {
-        cardRank = theRank;
-        cardSuit = theSuit;
-        if( cardSuit == Suit.SPADES || cardSuit == Suit.CLUBS )
-        {
-            cardColor = Clr.BLACK;
-            setForeground( Color.BLACK );
-        }
-        else if( cardSuit == Suit.HEARTS || cardSuit == Suit.DIAMONDS )
-        {
-            cardColor = Clr.RED;
-            setForeground( Color.RED );
-        }
+        this.code = code;
+        setForeground( Cards.isRed( code ) ? Color.RED : Color.BLACK );
         this.setText( this.toString() );
     }
     
     /*
-     *   Basic getter.  Returns row index of Card's current position
-     *
-     *   @return                     integer, current row index
-     */
-    public int getRow()
-    {
-        return row;
-    }
-    
-    /*
-     *   Basic getter.  Returns column index of Card's current position
+     *   Basic getter.  Returns value of Card's rank
      *
-     *   @return                     integer, current column index
+     *   @return                     integer value of Card rank
      */
-    public int getCol()
+    public int getValue()
     {
-        return col;
+        return Cards.rank( code );
     }
     
     /*
-     *   Basic getter.  Returns value of Card's rank
+     *   Basic getter.  Returns the byte code of the card this Card shows, as used by
+     *   Board, which stores every game position without Card objects.
      *
-     *   @return                     integer value of Card rank
+     *   @return                     byte code of Card, 0 - 51
      */
-    public int getValue()
+    public byte getCode()
     {
-        return cardRank.value();
+        return code;
     }
     
     /*
@@ -95,7 +64,7 @@ public class Card extends JButton
      */
     public Suit getSuit()
     {
-        return cardSuit;
+        return Cards.suitOf( code );
     }
     
     /*
@@ -105,29 +74,7 @@ public class Card extends JButton
      */
     public Clr getClr()
     {
-        return cardColor;
-    }
-    
-    /*
-     *   Basic setter.  Sets the stored row index of current position of Card in
-     *   FreeCell game.
-     *
-     *   @param           newRow          integer, the new roe index to be stored
-     */
-    public void setRow( int newRow )
-    {
-        this.row = newRow;
-    }
-    
-    /*
-     *   Basic setter.  Sets the stored column index of current position of Card in
-     *   FreeCell game.
-     *
-     *   @param           newCol           integer, the new column index to be stored
-     */
-    public void setCol( int newCol )
-    {
-        this.col = newCol;
+        return Cards.colorOf( code );
     }
     
     /*
@@ -141,7 +88,7 @@ public class Card extends JButton
      */
     public int compareRank( Card other )
     {
-        return this.getValue() - other.getValue();
+        return Cards.compareRank( code, other.code );
     }
     
     /*
@@ -153,7 +100,7 @@ public class Card extends JButton
      */
     public boolean sameSuit( Card other )
     {
-        return this.getSuit() == other.getSuit();
+        return Cards.sameSuit( code, other.code );
     }
     
     /*
@@ -165,7 +112,7 @@ public class Card extends JButton
      */
     public boolean sameColor( Card other )
     {
-        return this.getClr() == other.getClr();
+        return Cards.sameColor( code, other.code );
     }
     
     /*
@@ -176,6 +123,6 @@ public class Card extends JButton
      */
     public String toString()
     {
-        return ( cardRank.abbr() + " " + cardSuit.abbr() );
+        return Cards.name( code );
     }
 }
\ No newline at end of file
@@ -0,0 +1,153 @@
+/************
+ *
+ *    The 52 cards of FreeCell game as plain codes, with everything about each card
+ *    read from tables.  The model of the game uses these codes in place of Card
+ *    objects.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+/*
+ *   Cards has only static members.  A card is its code, suit * 13 + rank - 1, from 0
+ *   to 51, held in a byte.  A code is its own flyweight: it never changes, copies
+ *   as a single byte, and every fact about it is an entry in a table filled once
+ *   here, so no card needs an object.  Suits are in the order of the Suit enum,
+ *   Spades, Diamonds, Clubs, Hearts, so the red suits have odd ordinals.
+ *
+ *   Nothing here touches AWT or Swing.  A Card button on screen is only a view that
+ *   shows one code.
+ */
+public final class Cards
+{
+    public static final int COUNT = 52;
+
+    private static final byte [] RANK = new byte [ COUNT ];
+    private static final byte [] SUIT = new byte [ COUNT ];
+    private static final boolean [] RED = new boolean [ COUNT ];
+    private static final Rank [] RANKS = new Rank [ COUNT ];
+    private static final Suit [] SUITS = new Suit [ COUNT ];
+    private static final Clr [] COLORS = new Clr [ COUNT ];
+    private static final String [] NAMES = new String [ COUNT ];
+
+    static
+    {
+        for( Suit s : Suit.values() )
+        {
+            for( Rank r : Rank.values() )
+            {
+                int code = code( s, r );
+                RANK[ code ] = ( byte ) r.value();
+                SUIT[ code ] = ( byte ) s.ordinal();
+                RED[ code ] = ( s.ordinal() & 1 ) == 1;
+                RANKS[ code ] = r;
+                SUITS[ code ] = s;
+                COLORS[ code ] = RED[ code ] ? Clr.RED : Clr.BLACK;
+                NAMES[ code ] = r.abbr() + " " + s.abbr();
+            }
+        }
+    }
+
+    private Cards()
+    {
+    }
+
+    /*
+     *   Build the code of a card from its Suit and Rank.
+     *
+     *   @param       s              Suit of the card
+     *   @param       r              Rank of the card
+     *   @return                     byte code of the card
+     */
+    public static byte code( Suit s, Rank r )
+    {
+        return ( byte ) ( s.ordinal() * 13 + r.ordinal() );
+    }
+
+    /*
+     *   @param       code           card code
+     *   @return                     integer value of the card's rank, 1 for Ace to 13
+     */
+    public static int rank( int code )
+    {
+        return RANK[ code ];
+    }
+
+    /*
+     *   @param       code           card code
+     *   @return                     ordinal of the card's Suit
+     */
+    public static int suit( int code )
+    {
+        return SUIT[ code ];
+    }
+
+    /*
+     *   @param       code           card code
+     *   @return                     boolean, true if the card is red
+     */
+    public static boolean isRed( int code )
+    {
+        return RED[ code ];
+    }
+
+    /*
+     *   The enum values of a card, for display.
+     */
+    public static Rank rankOf( int code )
+    {
+        return RANKS[ code ];
+    }
+
+    public static Suit suitOf( int code )
+    {
+        return SUITS[ code ];
+    }
+
+    public static Clr colorOf( int code )
+    {
+        return COLORS[ code ];
+    }
+
+    /*
+     *   Difference in rank between 2 cards: positive if the first is higher, negative
+     *   if the second is, and 0 if they are of equal rank.
+     *
+     *   @param       a              code of the first card
+     *   @param       b              code of the second card
+     *   @return                     integer, difference in rank
+     */
+    public static int compareRank( int a, int b )
+    {
+        return RANK[ a ] - RANK[ b ];
+    }
+
+    /*
+     *   @return                     boolean, true if the 2 cards are the same suit
+     */
+    public static boolean sameSuit( int a, int b )
+    {
+        return SUIT[ a ] == SUIT[ b ];
+    }
+
+    /*
+     *   @return                     boolean, true if the 2 cards are the same color
+     */
+    public static boolean sameColor( int a, int b )
+    {
+        return RED[ a ] == RED[ b ];
+    }
+
+    /*
+     *   Concise label for a card, the abbreviations of its Rank and Suit separated by
+     *   a space, such as "10 H".
+     *
+     *   @param       code           card code
+     *   @return                     String label
+     */
+    public static String name( int code )
+    {
+        return NAMES[ code ];
+    }
+}
@@ -0,0 +1,381 @@
+/************
+ *
+ *    Headless command line for FreeCell game.  Deals, solves, and checks games
+ *    without a window, for scripts, containers, and CI.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.util.*;
+
+/*
+ *   CommandLine only uses the model classes: Board, Deals, Moves, Solver, and the
+ *   game archive.  None of them refers to AWT or Swing, and neither does this class,
+ *   so no AWT or Swing class is ever loaded and the commands run with no display.
+ *   FreeCell itself is a JFrame, which is why this is a separate main class rather
+ *   than options to FreeCell.main.
+ *
+ *   Results go to the output stream, one line each, so they can be piped.  Timing
+ *   goes to the error stream: how long after the JVM started the first result was
+ *   printed, and how much of that was spent in main.
+ *
+ *   Usage:
+ *       java CommandLine deal N
+ *       java CommandLine solve N [nodeBudget] [--threads T] [--table-bytes B]
+ *                                             [--table-file path]
+ *       java CommandLine batch firstDeal lastDeal [threads] [nodeBudget]
+ *       java CommandLine validate archiveFile
+ *
+ *   solve runs the single threaded Solver unless --threads asks for more than 1, when
+ *   the ParallelSolver searches the deal with that many threads.  --table-bytes keeps
+ *   the visited positions in an OffHeapPositionTable of that many bytes, such as 4G,
+ *   outside the heap, and --table-file backs that table with a file mapped into
+ *   memory, for deals whose searches would not fit in the heap.
+ *
+ *   The exit status is 0 on success, 1 if a solve fails or a game in the archive
+ *   does not replay, and 2 for bad arguments.
+ */
+public class CommandLine
+{
+    private final PrintStream out;
+    private final long mainStarted = System.nanoTime();
+    private boolean reported;
+    private VisitedTable table;
+
+    /*
+     *   Constructor method.
+     *
+     *   @param       out            PrintStream for results
+     */
+    public CommandLine( PrintStream out )
+    {
+        this.out = out;
+    }
+
+    /*
+     *   Basic setter.  Gives solve a VisitedTable to search with in place of the
+     *   solver's own heap table.
+     *
+     *   @param       visited        VisitedTable, or null for the default
+     */
+    public void setVisitedTable( VisitedTable visited )
+    {
+        table = visited;
+    }
+
+    /*
+     *   Print a result line.  The first one also reports the time to it.
+     */
+    private void result( String line )
+    {
+        out.println( line );
+        if( ! reported )
+        {
+            reported = true;
+            out.flush();
+            long now = System.currentTimeMillis();
+            long inMain = ( System.nanoTime() - mainStarted ) / 1000000;
+            /**
+             *   The start time of the JVM is only asked for now, since loading the
+             *   management classes takes longer than some commands.
+             */
+            long sinceStart = now - ManagementFactory.getRuntimeMXBean().getStartTime();
+            System.err.println( "first result " + sinceStart +
+                                " ms after the JVM started, " + inMain + " ms in main" );
+        }
+    }
+
+    /*
+     *   Print the columns of a deal, one row of Cards a line.
+     *
+     *   @param       number         deal number
+     *   @return                     exit status
+     */
+    public int deal( long number )
+    {
+        Board board = dealt( number );
+        StringBuilder line = new StringBuilder();
+        for( int row = 0; row < Board.MAX_COLUMN; row++ )
+        {
+            line.setLength( 0 );
+            for( int col = 0; col < Board.COLUMNS; col++ )
+            {
+                String name = row < board.columnLength( col ) ?
+                              Cards.name( board.cardAt( col, row ) ) : "";
+                line.append( String.format( "%-6s", name ) );
+            }
+            if( line.toString().isBlank() )
+            {
+                break;
+            }
+            result( line.toString().stripTrailing() );
+        }
+        return 0;
+    }
+
+    /*
+     *   Solve a deal and print the outcome and each move of the solution.
+     *
+     *   @param       number         deal number
+     *   @param       nodeBudget     node budget of the search
+     *   @param       threads        number of threads to search with
+     *   @return                     exit status, 1 if no solution was found
+     */
+    public int solve( long number, long nodeBudget, int threads )
+    {
+        Solution s;
+        if( threads > 1 )
+        {
+            ParallelSolver solver =
+                new ParallelSolver( threads, nodeBudget,
+                                    Solver.DEFAULT_TIME_BUDGET_MILLIS );
+            solver.setVisitedTable( table );
+            try
+            {
+                s = solver.solve( dealt( number ) );
+            }
+            finally
+            {
+                solver.shutdown();
+            }
+        }
+        else
+        {
+            Solver solver = new Solver( nodeBudget, Solver.DEFAULT_TIME_BUDGET_MILLIS );
+            solver.setVisitedTable( table );
+            s = solver.solve( dealt( number ) );
+        }
+        result( "deal " + number + ": " + s );
+        int [] moves = s.getMoves();
+        for( int i = 0; i < moves.length; i++ )
+        {
+            out.println( ( i + 1 ) + ". " + Moves.toString( moves[ i ] ) );
+        }
+        return s.isSolved() ? 0 : 1;
+    }
+
+    /*
+     *   Solve a range of deals on a pool of threads and print a line for each, in
+     *   deal order, then the totals.  The deals are run by BatchSurvey.inOrder, so
+     *   only a bounded window of them is in flight and any range can be run, and each
+     *   pool thread keeps one Solver for all its deals.
+     *
+     *   @param       first          first deal number
+     *   @param       last           last deal number
+     *   @param       threads        number of deals to solve at once
+     *   @param       nodeBudget     node budget of the Solver for each deal
+     *   @return                     exit status
+     */
+    public int batch( long first, long last, int threads, long nodeBudget )
+        throws IOException, InterruptedException
+    {
+        ThreadLocal< Solver > solvers = ThreadLocal.withInitial( () ->
+            new Solver( nodeBudget, Solver.DEFAULT_TIME_BUDGET_MILLIS ) );
+        long [] counts = new long [ 3 ];
+        long began = System.nanoTime();
+        BatchSurvey.inOrder( threads, first, last, d -> solvers.get().solve( dealt( d ) ),
+                             ( deal, s ) ->
+        {
+            counts[ s.getStatus() ]++;
+            result( "deal " + deal + ": " + s );
+        } );
+        out.printf( "%d deals in %.2f s: %d solved, %d unsolvable, %d budget exhausted%n",
+                    last - first + 1, ( System.nanoTime() - began ) / 1e9,
+                    counts[ Solution.SOLVED ], counts[ Solution.UNSOLVABLE ],
+                    counts[ Solution.BUDGET_EXHAUSTED ] );
+        return 0;
+    }
+
+    /*
+     *   Replay every game of an archive, checking each move against the rules, and
+     *   print a line for each game that does not replay.  A game that ends unfinished
+     *   is fine; a move the rules do not allow is not.
+     *
+     *   @param       file           Path of the archive
+     *   @return                     exit status, 1 if any game failed
+     */
+    public int validate( Path file ) throws IOException
+    {
+        Board board = new Board();
+        byte [] deck = new byte [ Board.DECK_SIZE ];
+        int [] moves = new int [ 64 ];
+        long games = 0;
+        long won = 0;
+        long failed = 0;
+        try( GameArchiveReader reader = new GameArchiveReader( file ) )
+        {
+            while( reader.next() )
+            {
+                games++;
+                if( moves.length < reader.moveBytes() )
+                {
+                    moves = new int [ reader.moveBytes() * 2 ];
+                }
+                int count = reader.moves( moves );
+                Deals.fill( reader.deal(), deck );
+                board.deal( deck );
+                int bad = -1;
+                for( int i = 0; i < count && bad < 0; i++ )
+                {
+                    if( board.check( moves[ i ] ) == Board.LEGAL )
+                    {
+                        board.move( moves[ i ] );
+                    }
+                    else
+                    {
+                        bad = i;
+                    }
+                }
+                if( bad >= 0 )
+                {
+                    failed++;
+                    result( "game " + games + ", deal " + reader.deal() + ": move " +
+                            ( bad + 1 ) + " is not legal: " +
+                            Moves.toString( moves[ bad ] ) );
+                }
+                else if( board.isWon() )
+                {
+                    won++;
+                }
+            }
+        }
+        result( games + " games, " + won + " won, " + failed + " not legal" );
+        return failed == 0 ? 0 : 1;
+    }
+
+    /*
+     *   Deal a numbered game onto a new Board.
+     */
+    private static Board dealt( long number )
+    {
+        if( ! Deals.isValid( number ) )
+        {
+            throw new IllegalArgumentException( "Not a deal number: " + number );
+        }
+        byte [] deck = new byte [ Board.DECK_SIZE ];
+        Deals.fill( number, deck );
+        Board board = new Board();
+        board.deal( deck );
+        return board;
+    }
+
+    private static void usage()
+    {
+        System.err.println( "Usage: java CommandLine deal N\n" +
+                            "       java CommandLine solve N [nodeBudget] " +
+                            "[--threads T] [--table-bytes B] [--table-file path]\n" +
+                            "       java CommandLine batch firstDeal lastDeal " +
+                            "[threads] [nodeBudget]\n" +
+                            "       java CommandLine validate archiveFile" );
+        System.exit( 2 );
+    }
+
+    /*
+     *   Take an option and its value out of the arguments.
+     *
+     *   @param       args           List of the arguments, which loses the option
+     *   @param       name           name of the option, such as "--threads"
+     *   @return                     String value of the option, or null if not given
+     */
+    private static String option( List< String > args, String name )
+    {
+        int i = args.indexOf( name );
+        if( i < 0 )
+        {
+            return null;
+        }
+        if( i + 1 >= args.size() )
+        {
+            usage();
+        }
+        args.remove( i );
+        return args.remove( i );
+    }
+
+    /*
+     *   Read a number of bytes, with an optional K, M, or G after it.
+     */
+    private static long bytes( String s )
+    {
+        int shift = "KMG".indexOf( Character.toUpperCase( s.charAt( s.length() - 1 ) ) );
+        if( shift < 0 )
+        {
+            return Long.parseLong( s );
+        }
+        long count = Long.parseLong( s.substring( 0, s.length() - 1 ) );
+        return count << ( 10 * ( shift + 1 ) );
+    }
+
+    public static void main( String [] arguments ) throws Exception
+    {
+        List< String > list = new ArrayList< String >( Arrays.asList( arguments ) );
+        String threads = option( list, "--threads" );
+        String tableBytes = option( list, "--table-bytes" );
+        String tableFile = option( list, "--table-file" );
+        String [] args = list.toArray( new String [ 0 ] );
+        if( args.length < 2 )
+        {
+            usage();
+        }
+        /**
+         *   Card names have suit symbols, so results are written as UTF-8 whatever the
+         *   platform's default.
+         */
+        PrintStream out = new PrintStream( new FileOutputStream( FileDescriptor.out ),
+                                           false, "UTF-8" );
+        CommandLine cli = new CommandLine( out );
+        if( tableBytes != null || tableFile != null )
+        {
+            long size = bytes( tableBytes != null ? tableBytes : "1G" );
+            VisitedTable table = tableFile != null ?
+                new OffHeapPositionTable( size, Paths.get( tableFile ) ) :
+                new OffHeapPositionTable( size );
+            cli.setVisitedTable( table );
+        }
+        int status = 2;
+        try
+        {
+            switch( args[ 0 ] )
+            {
+                case "deal":
+                    status = cli.deal( Long.parseLong( args[ 1 ] ) );
+                    break;
+                case "solve":
+                    status = cli.solve( Long.parseLong( args[ 1 ] ),
+                                        args.length > 2 ? Long.parseLong( args[ 2 ] ) :
+                                        Solver.DEFAULT_NODE_BUDGET,
+                                        threads != null ?
+                                        Integer.parseInt( threads ) : 1 );
+                    break;
+                case "batch":
+                    if( args.length < 3 )
+                    {
+                        usage();
+                    }
+                    status = cli.batch( Long.parseLong( args[ 1 ] ),
+                                        Long.parseLong( args[ 2 ] ),
+                                        args.length > 3 ? Integer.parseInt( args[ 3 ] ) :
+                                        Runtime.getRuntime().availableProcessors(),
+                                        args.length > 4 ? Long.parseLong( args[ 4 ] ) :
+                                        Solver.DEFAULT_NODE_BUDGET );
+                    break;
+                case "validate":
+                    status = cli.validate( Paths.get( args[ 1 ] ) );
+                    break;
+                default:
+                    usage();
+            }
+        }
+        catch( IllegalArgumentException e )
+        {
+            System.err.println( e.getMessage() );
+        }
+        out.flush();
+        System.exit( status );
+    }
+}
@@ -0,0 +1,112 @@
+/************
+ *
+ *    Set of visited positions shared by the threads of the ParallelSolver.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.util.concurrent.atomic.*;
+
+/*
+ *   ConcurrentPositionTable is an open addressed hash set of long keys with no locks.
+ *   A thread claims an empty slot with a single compare and set, so two threads
+ *   adding the same position agree on which of them added it first.  The Array has a
+ *   fixed size chosen up front, because growing it would need every thread to stop,
+ *   and it reports itself full at three quarters so probing stays short, though
+ *   threads between checks of isFull can still add past that until no slot is left.
+ *   As in PositionTable, the key 0 marks an empty slot and a hash of 0 is stored as 1.
+ */
+public class ConcurrentPositionTable implements VisitedTable
+{
+    private final AtomicLongArray keys;
+    private final int mask;
+    private final long limit;
+    private final LongAdder size = new LongAdder();
+    private volatile boolean overflowed;
+
+    /*
+     *   Constructor method.
+     *
+     *   @param       capacity       most positions the table must hold
+     */
+    public ConcurrentPositionTable( int capacity )
+    {
+        int slots = Integer.highestOneBit( Math.max( 16, capacity * 4 / 3 ) ) << 1;
+        keys = new AtomicLongArray( slots );
+        mask = slots - 1;
+        limit = slots / 4L * 3L;
+    }
+
+    /*
+     *   Add a position to the table.  Safe to call from any number of threads.
+     *
+     *   @param       key            64 bit hash of the position
+     *   @return                     boolean, true if this call added the position, false
+     *                               if it was already there or there was no room
+     */
+    public boolean add( long key )
+    {
+        if( key == 0 )
+        {
+            key = 1;
+        }
+        int i = PositionTable.spread( key ) & mask;
+        for( int probes = 0; probes <= mask; probes++ )
+        {
+            long current = keys.get( i );
+            if( current == key )
+            {
+                return false;
+            }
+            if( current == 0 )
+            {
+                if( keys.compareAndSet( i, 0, key ) )
+                {
+                    size.increment();
+                    return true;
+                }
+                /**
+                 *   Another thread took the slot first.  Look at it again, since it
+                 *   may have added this same key.
+                 */
+                probes--;
+                continue;
+            }
+            i = ( i + 1 ) & mask;
+        }
+        overflowed = true;
+        return false;
+    }
+
+    /*
+     *   @return                     number of positions in the table
+     */
+    public long size()
+    {
+        return size.sum();
+    }
+
+    /*
+     *   @return                     boolean, true once three quarters of slots are used,
+     *                               or once an add found no room
+     */
+    public boolean isFull()
+    {
+        return overflowed || size.sum() >= limit;
+    }
+
+    /*
+     *   Remove every position.  Must not be called while other threads are adding.
+     */
+    public void clear()
+    {
+        for( int i = 0; i < keys.length(); i++ )
+        {
+            keys.set( i, 0L );
+        }
+        size.reset();
+        overflowed = false;
+    }
+}
@@ -0,0 +1,112 @@
+/************
+ *
+ *    Deal generator for FreeCell game.  Turns a deal number into the order of the
+ *    52 cards, using the same numbered deals as the classic Microsoft FreeCell and
+ *    its extended versions, so any game can be reproduced from its number alone.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+/*
+ *   Deals has only static methods and keeps no state between calls.  Filling a deck
+ *   writes into an Array supplied by the caller and allocates nothing, so batch jobs
+ *   can regenerate any deal on demand instead of storing it.
+ */
+public final class Deals
+{
+    /*
+     *   Deal numbers run from 1 up to 2^33 - 1.  Deals below 2^31 are the classic
+     *   32 bit deals, and the higher ranges follow the extended numbering.
+     */
+    public static final long MIN_DEAL = 1L;
+    public static final long MAX_DEAL = 0x1FFFFFFFFL;
+
+    private static final long SEED_MASK = 0x3FFFFFFFFL;
+
+    /*
+     *   The classic deals number their cards with rank in the high part and suit in
+     *   the low 2 bits, in the order Clubs, Diamonds, Hearts, Spades.  This table
+     *   converts that suit order to Suit ordinals so codes match Board.
+     */
+    private static final int [] SUIT_OF_CLASSIC = { 2, 1, 3, 0 };
+
+    private Deals()
+    {
+    }
+
+    /*
+     *   Test whether a number names a deal.
+     *
+     *   @param       dealNumber     number to test
+     *   @return                     boolean, true if the deal exists
+     */
+    public static boolean isValid( long dealNumber )
+    {
+        return dealNumber >= MIN_DEAL && dealNumber <= MAX_DEAL;
+    }
+
+    /*
+     *   Fill a deck with the cards of a numbered deal, in the order they are dealt to
+     *   the columns.  Starts with the cards in classic order and, working from the end
+     *   of the Array, swaps a randomly chosen remaining card into the last open place.
+     *   That leaves the cards in reverse dealing order, so the Array is reversed at
+     *   the end.
+     *
+     *   @param       dealNumber     number of the deal, MIN_DEAL to MAX_DEAL
+     *   @param       deck           byte [] of at least 52 entries to fill with codes
+     */
+    public static void fill( long dealNumber, byte [] deck )
+    {
+        if( ! isValid( dealNumber ) )
+        {
+            throw new IllegalArgumentException( "No deal number " + dealNumber );
+        }
+        for( int i = 0; i < Board.DECK_SIZE; i++ )
+        {
+            deck[ i ] = ( byte ) ( SUIT_OF_CLASSIC[ i & 3 ] * 13 + ( i >> 2 ) );
+        }
+
+        /**
+         *   The random number generator is the linear congruential one from the C
+         *   library the original game used.  Deals of 2^31 and up set the high bit of
+         *   each result, and deals of 2^32 and up restart the seed and add 1.
+         */
+        long seed = dealNumber < 0x100000000L ? dealNumber : dealNumber - 0x100000000L;
+        for( int left = Board.DECK_SIZE; left > 1; left-- )
+        {
+            seed = ( seed * 214013L + 2531011L ) & SEED_MASK;
+            int rand = ( int ) ( seed >> 16 ) & 0x7FFF;
+            if( dealNumber >= 0x100000000L )
+            {
+                rand++;
+            }
+            else if( dealNumber >= 0x80000000L )
+            {
+                rand |= 0x8000;
+            }
+            int j = rand % left;
+            byte chosen = deck[ j ];
+            deck[ j ] = deck[ left - 1 ];
+            deck[ left - 1 ] = chosen;
+        }
+        for( int i = 0, j = Board.DECK_SIZE - 1; i < j; i++, j-- )
+        {
+            byte temp = deck[ i ];
+            deck[ i ] = deck[ j ];
+            deck[ j ] = temp;
+        }
+    }
+
+    /*
+     *   Pick a deal number at random from the classic range, for when the player has
+     *   no particular deal in mind.
+     *
+     *   @return                     a deal number from 1 to 2^31 - 1
+     */
+    public static long randomDeal()
+    {
+        return 1L + ( long ) ( Math.random() * Integer.MAX_VALUE );
+    }
+}
@@ -0,0 +1,413 @@
+/************
+ *
+ *    Difficulty index for FreeCell game.  Rates a range of numbered deals in parallel
+ *    and keeps them in a file sorted by difficulty, so a deal of any difficulty can
+ *    be picked at random without reading the whole file.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/*
+ *   A deal is rated by solving it with the Solver: the nodes expanded, the number of
+ *   moves in the winning line, and the fewest free cells the deal can be won with,
+ *   found by solving it again with the Solver limited to fewer cells until it fails.
+ *   The three are combined into one integer difficulty by the difficulty method, and
+ *   the EASY, MEDIUM, and HARD bands are ranges of it.  A deal the Solver cannot win
+ *   within its budget is left out of the index, since it cannot be offered as
+ *   winnable.
+ *
+ *   The index file is a run of RECORD_SIZE byte records sorted by difficulty, then by
+ *   deal number: the deal number (8 bytes), the nodes expanded (4 bytes), the
+ *   difficulty (2 bytes), the length of the line (1 byte), and the free cells needed
+ *   (1 byte), all big endian.  The length is stored capped at 255, so a longer line
+ *   reads back as 255 moves; the difficulty is worked out before the cap and is
+ *   exact.  Finding the deals in a range of difficulty is 2 binary searches over the
+ *   records, reading one short for each step, and a random one of them is a single
+ *   record read.
+ *
+ *   Building rates deals with BatchSurvey.inOrder, on a fixed pool of threads each
+ *   keeping one Solver, with a bounded window in flight, and keeps only a sort key
+ *   and 3 small numbers for each deal in memory until they are sorted and written.
+ *   The file is written beside the index and moved over it when complete, so a
+ *   reader never sees half an index.
+ */
+public class DifficultyIndex implements Closeable
+{
+    public static final int RECORD_SIZE = 16;
+
+    /*
+     *   Bands of difficulty offered to players, each from the low to the high
+     *   difficulty given, inclusive.
+     */
+    public static final int [] EASY = { 0, 40 };
+    public static final int [] MEDIUM = { 41, 48 };
+    public static final int [] HARD = { 49, Short.MAX_VALUE };
+
+    /*
+     *   Points of difficulty for each free cell a deal needs.
+     */
+    private static final int CELL_POINTS = 4;
+
+    private static final int BUFFER_RECORDS = 4096;
+
+    private final FileChannel channel;
+    private final long records;
+    private final ByteBuffer scratch = ByteBuffer.allocate( RECORD_SIZE );
+
+    /*
+     *   The measures of one deal.
+     */
+    public static final class Rating
+    {
+        public final long deal;
+        public final long nodes;
+        public final int length;
+        public final int cellsNeeded;
+        public final int difficulty;
+
+        public Rating( long deal, long nodes, int length, int cellsNeeded )
+        {
+            this( deal, nodes, length, cellsNeeded,
+                  difficulty( nodes, length, cellsNeeded ) );
+        }
+
+        /*
+         *   A Rating read from an index keeps the difficulty it was stored with.
+         */
+        Rating( long deal, long nodes, int length, int cellsNeeded, int difficulty )
+        {
+            this.deal = deal;
+            this.nodes = nodes;
+            this.length = length;
+            this.cellsNeeded = cellsNeeded;
+            this.difficulty = difficulty;
+        }
+
+        public String toString()
+        {
+            return "deal " + deal + ": difficulty " + difficulty + ", " + nodes +
+                   " nodes, " + length + " moves, " + cellsNeeded + " free cells needed";
+        }
+    }
+
+    /*
+     *   Constructor method.  Opens an index for lookups.
+     *
+     *   @param       file           Path of the index
+     */
+    public DifficultyIndex( Path file ) throws IOException
+    {
+        channel = FileChannel.open( file, StandardOpenOption.READ );
+        records = channel.size() / RECORD_SIZE;
+    }
+
+    /*
+     *   Combine the measures of a deal into its difficulty.  Nodes count by their
+     *   logarithm, since a search 10 times as long is not 10 times as hard to play;
+     *   every free cell the deal needs counts CELL_POINTS, and every 10 moves of the
+     *   line a point.
+     *
+     *   @param       nodes          nodes the Solver expanded
+     *   @param       length         number of moves in the winning line
+     *   @param       cellsNeeded    fewest free cells the deal can be won with
+     *   @return                     integer difficulty, higher being harder
+     */
+    public static int difficulty( long nodes, int length, int cellsNeeded )
+    {
+        double searched = 3 * Math.log( Math.max( nodes, 1 ) ) / Math.log( 2 );
+        double cells = CELL_POINTS * cellsNeeded;
+        return ( int ) Math.min( Math.round( searched + cells + length / 10.0 ),
+                                 Short.MAX_VALUE );
+    }
+
+    /*
+     *   Rate one deal.  Once the Solver wins it, it is solved again with one free
+     *   cell fewer at a time until the Solver fails, and the fewest cells it won with
+     *   are the cells needed.  A search with fewer cells that runs out of budget counts
+     *   as a loss, so a deal too hard to search that way is rated as needing more.
+     *
+     *   @param       deal           deal number
+     *   @param       board          Board to deal onto
+     *   @param       deck           byte [] of DECK_SIZE entries to fill
+     *   @param       solver         Solver to search with
+     *   @return                     Rating, or null if the Solver found no win
+     */
+    public static Rating rate( long deal, Board board, byte [] deck, Solver solver )
+    {
+        Deals.fill( deal, deck );
+        board.deal( deck );
+        Solution s = solver.solve( board );
+        if( ! s.isSolved() )
+        {
+            return null;
+        }
+        int cellsNeeded = Board.CELLS;
+        while( cellsNeeded > 0 )
+        {
+            solver.setCellLimit( cellsNeeded - 1 );
+            if( ! solver.solve( board ).isSolved() )
+            {
+                break;
+            }
+            cellsNeeded--;
+        }
+        solver.setCellLimit( Board.CELLS );
+        return new Rating( deal, s.getNodes(), s.getMoves().length, cellsNeeded );
+    }
+
+    /*
+     *   Rate a range of deals in parallel and write the index, replacing any index
+     *   already in the file.
+     *
+     *   @param       first          first deal number of the range
+     *   @param       last           last deal number of the range
+     *   @param       file           Path of the index
+     *   @param       threads        number of deals to rate at once
+     *   @param       nodeBudget     node budget of the Solver for each deal
+     *   @return                     number of deals in the index
+     */
+    public static int build( long first, long last, Path file, int threads,
+                             long nodeBudget ) throws IOException, InterruptedException
+    {
+        if( ! Deals.isValid( first ) || ! Deals.isValid( last ) || first > last ||
+            last - first + 1 > Integer.MAX_VALUE - 8 )
+        {
+            throw new IllegalArgumentException( "Not a range of deals: " + first +
+                                                " to " + last );
+        }
+        int size = ( int ) ( last - first + 1 );
+
+        /**
+         *   A sort key is the difficulty above the deal's offset in the range, so
+         *   sorting the keys sorts by difficulty and then by deal.
+         */
+        long [] keys = new long [ size ];
+        int [] nodes = new int [ size ];
+        byte [] lengths = new byte [ size ];
+        byte [] cellsNeeded = new byte [ size ];
+        int [] counted = new int [ 1 ];
+
+        ThreadLocal< Board > boards = ThreadLocal.withInitial( Board::new );
+        ThreadLocal< byte [] > decks =
+            ThreadLocal.withInitial( () -> new byte [ Board.DECK_SIZE ] );
+        ThreadLocal< Solver > solvers = ThreadLocal.withInitial( () ->
+            new Solver( nodeBudget, Solver.DEFAULT_TIME_BUDGET_MILLIS ) );
+        BatchSurvey.inOrder( threads, first, last,
+                             d -> rate( d, boards.get(), decks.get(), solvers.get() ),
+                             ( deal, r ) ->
+        {
+            if( r != null )
+            {
+                int offset = ( int ) ( deal - first );
+                keys[ counted[ 0 ]++ ] = ( long ) r.difficulty << 32 | offset;
+                nodes[ offset ] = ( int ) Math.min( r.nodes, Integer.MAX_VALUE );
+                lengths[ offset ] = ( byte ) Math.min( r.length, 255 );
+                cellsNeeded[ offset ] = ( byte ) r.cellsNeeded;
+            }
+        } );
+        int rated = counted[ 0 ];
+
+        Arrays.parallelSort( keys, 0, rated );
+        Path partial = file.resolveSibling( file.getFileName() + ".partial" );
+        try( FileChannel out = FileChannel.open( partial, StandardOpenOption.CREATE,
+                                                 StandardOpenOption.WRITE,
+                                                 StandardOpenOption.TRUNCATE_EXISTING ) )
+        {
+            ByteBuffer buffer = ByteBuffer.allocate( RECORD_SIZE * BUFFER_RECORDS );
+            for( int i = 0; i < rated; i++ )
+            {
+                int offset = ( int ) keys[ i ];
+                buffer.putLong( first + offset );
+                buffer.putInt( nodes[ offset ] );
+                buffer.putShort( ( short ) ( keys[ i ] >>> 32 ) );
+                buffer.put( lengths[ offset ] );
+                buffer.put( cellsNeeded[ offset ] );
+                if( ! buffer.hasRemaining() || i == rated - 1 )
+                {
+                    buffer.flip();
+                    while( buffer.hasRemaining() )
+                    {
+                        out.write( buffer );
+                    }
+                    buffer.clear();
+                }
+            }
+            out.force( false );
+        }
+        Files.move( partial, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+        return rated;
+    }
+
+    /*
+     *   @return                     number of deals in the index
+     */
+    public long size()
+    {
+        return records;
+    }
+
+    /*
+     *   Read one record of the index.
+     *
+     *   @param       i              index of the record, from 0 to size() - 1
+     *   @return                     Rating of the record's deal
+     */
+    public synchronized Rating rating( long i ) throws IOException
+    {
+        read( i, RECORD_SIZE );
+        return new Rating( scratch.getLong( 0 ), scratch.getInt( 8 ),
+                           scratch.get( 14 ) & 0xFF, scratch.get( 15 ) & 0xFF,
+                           scratch.getShort( 12 ) );
+    }
+
+    /*
+     *   Read the start of a record into the scratch buffer.
+     */
+    private void read( long i, int bytes ) throws IOException
+    {
+        scratch.clear().limit( bytes );
+        long at = i * RECORD_SIZE;
+        while( scratch.hasRemaining() )
+        {
+            if( channel.read( scratch, at + scratch.position() ) < 0 )
+            {
+                throw new EOFException( "Index ends inside record " + i );
+            }
+        }
+    }
+
+    /*
+     *   Binary search for the first record whose difficulty is at least a value.
+     *
+     *   @param       difficulty     integer difficulty
+     *   @return                     long index of the record, or size() if none
+     */
+    public synchronized long lowerBound( int difficulty ) throws IOException
+    {
+        long low = 0;
+        long high = records;
+        while( low < high )
+        {
+            long mid = ( low + high ) >>> 1;
+            read( mid, 14 );
+            if( scratch.getShort( 12 ) < difficulty )
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /*
+     *   @return                     number of deals with a difficulty from low to
+     *                               high, inclusive
+     */
+    public long count( int low, int high ) throws IOException
+    {
+        return high < low ? 0 : lowerBound( high + 1 ) - lowerBound( low );
+    }
+
+    /*
+     *   Pick a deal at random from those with a difficulty from low to high,
+     *   inclusive, each as likely as the others.
+     *
+     *   @param       low            lowest difficulty
+     *   @param       high           highest difficulty
+     *   @param       random         Random to pick with
+     *   @return                     Rating of the deal, or null if there are none
+     */
+    public Rating randomDeal( int low, int high, Random random ) throws IOException
+    {
+        if( high < low )
+        {
+            return null;
+        }
+        long from = lowerBound( low );
+        long to = lowerBound( high + 1 );
+        if( from == to )
+        {
+            return null;
+        }
+        long i = from + ( long ) ( random.nextDouble() * ( to - from ) );
+        return rating( Math.min( i, to - 1 ) );
+    }
+
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    private static void usage()
+    {
+        System.err.println( "Usage: java DifficultyIndex build firstDeal lastDeal file " +
+                            "[threads] [nodeBudget]\n" +
+                            "       java DifficultyIndex pick file easy|medium|hard\n" +
+                            "       java DifficultyIndex pick file lowest highest\n" +
+                            "       java DifficultyIndex bands file" );
+        System.exit( 2 );
+    }
+
+    public static void main( String [] args ) throws Exception
+    {
+        if( args.length < 2 )
+        {
+            usage();
+        }
+        if( args[ 0 ].equals( "build" ) )
+        {
+            if( args.length < 4 )
+            {
+                usage();
+            }
+            long first = Long.parseLong( args[ 1 ] );
+            long last = Long.parseLong( args[ 2 ] );
+            int threads = args.length > 4 ? Integer.parseInt( args[ 4 ] ) :
+                          Runtime.getRuntime().availableProcessors();
+            long budget = args.length > 5 ? Long.parseLong( args[ 5 ] ) :
+                          Solver.DEFAULT_NODE_BUDGET;
+            long began = System.nanoTime();
+            int rated = build( first, last, Paths.get( args[ 3 ] ), threads, budget );
+            System.out.printf( "%d of %d deals indexed in %.1f s%n", rated,
+                               last - first + 1, ( System.nanoTime() - began ) / 1e9 );
+            return;
+        }
+        try( DifficultyIndex index = new DifficultyIndex( Paths.get( args[ 1 ] ) ) )
+        {
+            if( args[ 0 ].equals( "bands" ) )
+            {
+                System.out.println( index.size() + " deals: " +
+                                    index.count( EASY[ 0 ], EASY[ 1 ] ) + " easy, " +
+                                    index.count( MEDIUM[ 0 ], MEDIUM[ 1 ] ) +
+                                    " medium, " +
+                                    index.count( HARD[ 0 ], HARD[ 1 ] ) + " hard" );
+                return;
+            }
+            if( ! args[ 0 ].equals( "pick" ) || args.length < 3 )
+            {
+                usage();
+            }
+            int [] band = args[ 2 ].equals( "easy" ) ? EASY :
+                          args[ 2 ].equals( "medium" ) ? MEDIUM :
+                          args[ 2 ].equals( "hard" ) ? HARD :
+                          new int [] { Integer.parseInt( args[ 2 ] ),
+                                       args.length > 3 ? Integer.parseInt( args[ 3 ] ) :
+                                       Integer.parseInt( args[ 2 ] ) };
+            Rating r = index.randomDeal( band[ 0 ], band[ 1 ], new Random() );
+            System.out.println( r != null ? r.toString() : "No deal in that range." );
+            System.exit( r != null ? 0 : 1 );
+        }
+    }
+}
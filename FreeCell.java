@@ -12,6 +12,8 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.util.*;
+import java.io.*;
+import java.nio.file.*;
 
 
 /*
@@ -29,6 +31,9 @@ public class FreeCell extends JFrame
     private JButton [] removePiles = new JButton [ 4 ];
     private JButton newGameButton = new JButton( "Deal a new game" );
     private JButton rulesButton = new JButton( "Instructions" );
+    private JButton undoButton = new JButton( "Undo" );
+    private JButton redoButton = new JButton( "Redo" );
+    private JButton hintButton = new JButton( "Hint" );
     private JPanel freeCellPanel = new JPanel( new GridLayout( 1, 4, 6, 6 ) );
     private JPanel removePilePanel = new JPanel( new GridLayout( 1, 4, 6, 6 ) );
     private JLabel displayLabel = new JLabel();
@@ -37,14 +42,81 @@ public class FreeCell extends JFrame
     private final String NALM = "Not a legal move.";
     private final String NEFC = "Not enough free cells.";
     private final String WIN = "Congratulations, you win!";
-    private ArrayList [] columns = new ArrayList [ 8 ];
+    private final String THINKING = "Looking for a hint...";
+    private final String NO_HINT = "No winning line found from here.";
+    private final String HINTS_OFF = "Hints are turned off.";
+    private final String NADN = "Not a deal number.";
+    private Board board = new Board();
+    private MoveJournal journal = new MoveJournal();
+    private GameArchiveWriter archive;
+    private HintEngine hints = new HintEngine( Solver.DEFAULT_NODE_BUDGET,
+                                               Solver.DEFAULT_TIME_BUDGET_MILLIS );
+    private boolean hintWanted;
+    private boolean replaying;
+    private JCheckBox autoPlayBox = new JCheckBox( "Auto-play", true );
+    private int [] autoMoves = new int [ 52 ];
+    
+    /*
+     *   Places changed since the display was last brought up to date: bit col for
+     *   each column, then FREE_CELLS_CHANGED and PILES_CHANGED.
+     */
+    private static final int FREE_CELLS_CHANGED = 1 << 8;
+    private static final int PILES_CHANGED = 1 << 9;
+    private int changed;
+    private byte [] dealOrder = new byte [ 52 ];
+    private long dealNumber;
     private JPanel [] colPanels = new JPanel [ 8 ];
     private Card selected = null;
     
     /*
-     *   Constructor method
+     *   The painted board, when the game is drawn by a BoardCanvas instead of by Card
+     *   buttons in panels.  The Card buttons are still made and given locations, so
+     *   clicks on the canvas go through determineSource just as button clicks do, but
+     *   they are never shown.
+     */
+    private BoardCanvas canvas;
+    
+    /*
+     *   Where each clickable component is, so a click is dispatched with one lookup
+     *   instead of a search of every slot.  A location packs a zone into the lowest 2
+     *   bits and an index above them: Board.COLUMN, Board.FREE_CELL, or
+     *   Board.REMOVE_PILE with the index of the column, cell, or pile, or CONTROLS with
+     *   NEW_GAME, RULES, UNDO, REDO, or HINT.  Placeholder buttons never move, and
+     *   each Card's entry is updated whenever the display puts it somewhere.
+     */
+    public static final int CONTROLS = 3;
+    public static final int NEW_GAME = 0;
+    public static final int RULES = 1;
+    public static final int UNDO = 2;
+    public static final int REDO = 3;
+    public static final int HINT = 4;
+    private Map< Object, Integer > locations = new IdentityHashMap< Object, Integer >();
+    
+    /*
+     *   Constructor method.  Shows the board with Card buttons.
      */
     public FreeCell()
+    {
+        this( false );
+    }
+    
+    /*
+     *   Constructor method.  Shows the board.
+     *
+     *   @param       painted       boolean, true to draw the board with a BoardCanvas
+     */
+    public FreeCell( boolean painted )
+    {
+        this( painted, true );
+    }
+    
+    /*
+     *   Constructor method
+     *
+     *   @param       painted       boolean, true to draw the board with a BoardCanvas
+     *   @param       shown         boolean, false to build the frame without showing it
+     */
+    public FreeCell( boolean painted, boolean shown )
     {
         /**
          *   Set basic look and feel of JFrame
@@ -55,18 +127,12 @@ public class FreeCell extends JFrame
         Font f = new Font( "Helvetica", Font.PLAIN, 30 );
         
         /**
-         *   Populate deck Array with 52 Card objects.  Nested for each loops create
-         *   each unique possibility with 4 suits and 13 ranks.
+         *   Populate deck Array with 52 Card objects, one to show each card code, so
+         *   the Card for a code the board holds is gameDeck[ code ].
          */
-        int counter = 0;
-        for( Suit s : Suit.values() )
+        for( int code = 0; code < Cards.COUNT; code++ )
         {
-            for( Rank r : Rank.values() )
-            {
-                Card myCard = new Card( s, r );
-                gameDeck[ counter ] = myCard;
-                counter ++;
-            }
+            gameDeck[ code ] = new Card( ( byte ) code );
         }
         
         /**
@@ -85,9 +151,8 @@ public class FreeCell extends JFrame
         }  
         
         /**
-         *   Populate columns array with ArrayLists that each represent columns of Cards.
-         *   Populate colPanels array with JPanels that show these columns of Cards
-         *   as buttons in GUI.
+         *   Populate colPanels array with JPanels that show the columns of Cards held
+         *   by the board as buttons in GUI.
          *   Lastly, populate colPlaceholderButtons array with blank JButtons that will
          *   be pulled into GUI when a column is emptied of Cards.  These buttons
          *   giver user an element to interact with in order to put other Cards back into
@@ -95,7 +160,6 @@ public class FreeCell extends JFrame
          */
         for( int col = 0; col < 8; col++ )
         {
-            columns[ col ] = new ArrayList< JButton >();
             colPanels[ col ] = new JPanel( new GridLayout( 19, 1, 3, 3 ) );
             colPlaceholderButtons[ col ] = new JButton( " " );
             colPlaceholderButtons[ col ].addActionListener( new Selector() );
@@ -118,6 +182,34 @@ public class FreeCell extends JFrame
         }
         rulesButton.addActionListener( new Selector() );
         newGameButton.addActionListener( new Selector() );
+        undoButton.addActionListener( new Selector() );
+        redoButton.addActionListener( new Selector() );
+        hintButton.addActionListener( new Selector() );
+        hints.setListener( () ->
+        {
+            if( hintWanted )
+            {
+                showHint();
+            }
+        } );
+        
+        /**
+         *   Record the locations of the components that stay in one place.
+         */
+        for( int i = 0; i < 4; i++ )
+        {
+            locations.put( freeCellButtons[ i ], location( Board.FREE_CELL, i ) );
+            locations.put( removePileButtons[ i ], location( Board.REMOVE_PILE, i ) );
+        }
+        for( int col = 0; col < 8; col++ )
+        {
+            locations.put( colPlaceholderButtons[ col ], location( Board.COLUMN, col ) );
+        }
+        locations.put( newGameButton, location( CONTROLS, NEW_GAME ) );
+        locations.put( rulesButton, location( CONTROLS, RULES ) );
+        locations.put( undoButton, location( CONTROLS, UNDO ) );
+        locations.put( redoButton, location( CONTROLS, REDO ) );
+        locations.put( hintButton, location( CONTROLS, HINT ) );
                
         /**
          *   Finish look and feel by setting arrangement of JPanels and their contents
@@ -125,7 +217,7 @@ public class FreeCell extends JFrame
         JPanel playingAreaPanel = new JPanel( new GridLayout( 1, 8, 3, 3 ) );
         JPanel topPanel = new JPanel( new GridLayout( 2, 1, 3, 3 ) );
         JPanel topCardsPanel = new JPanel( new GridLayout( 1, 2, 3, 3 ) );
-        JPanel bottomPanel = new JPanel( new GridLayout( 1, 2, 3, 3 ) );
+        JPanel bottomPanel = new JPanel( new GridLayout( 1, 6, 3, 3 ) );
         
         /**
          *   Add each column of Card buttons to the playing area.
@@ -141,6 +233,10 @@ public class FreeCell extends JFrame
         
         rulesButton.setFont( f );
         newGameButton.setFont( f );
+        undoButton.setFont( f );
+        redoButton.setFont( f );
+        hintButton.setFont( f );
+        autoPlayBox.setFont( f );
             
         topPanel.add( topCardsPanel );
         topPanel.add( displayLabel );
@@ -150,177 +246,337 @@ public class FreeCell extends JFrame
         
         bottomPanel.add( rulesButton );
         bottomPanel.add( newGameButton );
+        bottomPanel.add( hintButton );
+        bottomPanel.add( undoButton );
+        bottomPanel.add( redoButton );
+        bottomPanel.add( autoPlayBox );
         
-        this.add( topPanel, BorderLayout.NORTH );
-        this.add( playingAreaPanel, BorderLayout.CENTER );
+        if( painted )
+        {
+            canvas = new BoardCanvas( board );
+            canvas.setSelection( () -> selected == null ? -1 : selected.getCode() );
+            canvas.setListener( ( zone, index, code ) ->
+                determineSource( code == Board.EMPTY ? componentAt( zone, index ) :
+                                                       gameDeck[ code ] ) );
+            this.add( displayLabel, BorderLayout.NORTH );
+            this.add( canvas, BorderLayout.CENTER );
+        }
+        else
+        {
+            this.add( topPanel, BorderLayout.NORTH );
+            this.add( playingAreaPanel, BorderLayout.CENTER );
+        }
         this.add( bottomPanel, BorderLayout.SOUTH );
           
         /**
          *   Finish constructor by dealing the first hand of cards.
          */
-        dealCards( shuffle( gameDeck ) );
+        dealCards( Deals.randomDeal() );
         
-        this.setVisible( true );
+        this.setVisible( shown );
     }
     
     /*
-     *   Since the game deck remains constant to ensure each new game has a consistent
-     *   basis, this method creates a new deck array, copying the contents from the
-     *   game deck and randomly generating a new order.
+     *   Put the codes of the Cards in the order of a numbered deal.  The same deal
+     *   number always gives the same order, so any game can be played again.  The
+     *   codes are written into the same Array every time, nothing new is created.
      *
-     *   @param          deck       Card [] to copy the contents from
-     *   @return         shuffled   new Card [] in shuffled order
+     *   @param          number     deal number, from Deals.MIN_DEAL to Deals.MAX_DEAL
+     *   @return                    byte [] of 52 card codes in dealing order
      */
-    public Card [] shuffle( Card [] deck )
+    public byte [] shuffle( long number )
     {
-        /**
-         *   Make an ArrayList of ordered integers from 0 - 51
-         */
-        ArrayList< Integer > oldOrder = new ArrayList< Integer >();
-        for( int i = 0; i < 52; i++ )
+        Deals.fill( number, dealOrder );
+        return dealOrder;
+    }
+    
+    /*
+     *   At the beginning of each new game, hand the codes of the Cards to the board,
+     *   which deals a card out to the first row of each column, and then back to the
+     *   beginning of the columns for the next row, and so on.  The deal number is
+     *   shown in the title so the player can come back to the same game.
+     *
+     *   @ param         number        deal number of the new game
+     */
+    public void dealCards( long number )
+    {
+        archiveGame();
+        dealNumber = number;
+        board.deal( shuffle( number ) );
+        journal.clear();
+        this.setTitle( "FreeCell #" + number );
+        refreshDisplay();
+    }
+    
+    /*
+     *   Basic getter.  Returns the number of the deal being played
+     *
+     *   @return                   long, current deal number
+     */
+    public long getDealNumber()
+    {
+        return dealNumber;
+    }
+    
+    /*
+     *   Ask the player which deal to play, offering a random deal number, and deal it.
+     *   Pressing Cancel keeps the current game.
+     */
+    public void chooseDeal()
+    {
+        String answer = JOptionPane.showInputDialog( this, "Deal number:", 
+                                                     Deals.randomDeal() );
+        if( answer == null )
         {
-            oldOrder.add( i );
+            return;
         }
-        
-        /**
-         *   Make an array of integers in random order using Math.random multiplied by
-         *   the ordered ArrayList's size, which decrements with each integer removed.
-         */
-        int [] newOrder = new int [ 52 ];
-        for( int i = 0; i < 52; i++ )
+        try
         {
-            int nextCard = oldOrder.remove( ( int ) ( Math.random() * oldOrder.size() ) );
-            newOrder[ i ] = nextCard;
+            long number = Long.parseLong( answer.trim() );
+            if( Deals.isValid( number ) )
+            {
+                dealCards( number );
+                return;
+            }
         }
-        
-        /**
-         *   Use the randomly ordered array to make a new deck array that points to each
-         *   value of the ordered game deck, but with a different order each time
-         *   shuffle is called.
-         */
-        Card [] shuffled = new Card [ 52 ];
-        for( int i = 0; i < 52; i++ )
+        catch( NumberFormatException e )
         {
-            shuffled[ i ] = deck[ newOrder[ i ] ];
         }
-        
-        return shuffled;
+        displayLabel.setText( NADN );
+        selected = null;
     }
     
     /*
-     *   At the beginning of each new game, distribute the Cards to the columns using
-     *   integer division and quotient as counters.  The quotient of dividing the column
-     *   counter by 8 only has the result of incrementing the row when 8 columns are 
-     *   dealt out.  The remainder of dividing the column counter by 8 has no effect on
-     *   the counter until 8 is reached, at which point it resets.  In other words, a
-     *   card is dealt out to the first row of each column, and then back to the
-     *   beginning of the columns for the next row, and so on.
-     *
-     *   @ param         deck          Card [] to distribute across playing area
+     *   This method is called when the game is first dealt.  It updates the whole GUI
+     *   to reflect the position held by the board, bringing every column, the free
+     *   cells, and the remove piles up to date.  The location of each Card shown is
+     *   recorded.
      */
-    public void dealCards( Card [] deck )
+    public void refreshDisplay()
     {
-        /**
-         *   Clear the GUI for all new games after original deal
-         */
         for( int col = 0; col < 8; col++ )
         {
-            columns[ col ].clear();
+            refreshColumn( col );
         }
-        int colCounter = 0;
-        int rowCounter = 0;
-        for( Card c : deck )
+        refreshFreeCells();
+        refreshRemovePiles();
+        if( canvas != null )
         {
-            columns [ colCounter ].add( c );
-            c.setCol( colCounter );
-            c.setRow( rowCounter );
-            colCounter++;
-            rowCounter += colCounter / 8;
-            colCounter = colCounter % 8;
+            canvas.showAll();
         }
-        
-        for( int i = 0; i < 4; i++ )
+        finishRefresh();
+    }
+    
+    /*
+     *   Note that a place on the board has changed and its panel needs updating.  Any
+     *   number of moves can be noted before the display is brought up to date, and
+     *   each panel is then updated once however many of them touched it.
+     *
+     *   @param      zone          Board.COLUMN, Board.FREE_CELL, or Board.REMOVE_PILE
+     *   @param      index         integer index of the place within its zone
+     */
+    private void markChanged( int zone, int index )
+    {
+        if( zone == Board.COLUMN )
         {
-            freeCells[ i ] = freeCellButtons[ i ];
-            removePiles[ i ] = removePileButtons[ i ];
+            changed |= 1 << index;
+        }
+        else if( zone == Board.FREE_CELL )
+        {
+            changed |= FREE_CELLS_CHANGED;
+        }
+        else
+        {
+            changed |= PILES_CHANGED;
         }
-        
-        refreshDisplay();
+    }
+    
+    private void markChanged( int move )
+    {
+        markChanged( Moves.srcZone( move ), Moves.srcIndex( move ) );
+        markChanged( Moves.destZone( move ), Moves.destIndex( move ) );
     }
     
     /*
-     *   This method is called when the game is first dealt, and after each successful
-     *   move.  It updates the GUI to reflect the changes made to the Arrays and
-     *   ArrayLists by clearing all the grids and newly adding all of the Cards and
-     *   JButtons in the new order, including placeholders for empty columns.
+     *   Update the panels of every place noted as changed, then finish as after any
+     *   move.  Timed as a GameEvents.RefreshEvent.
      */
-    public void refreshDisplay()
+    private void refreshChanged()
     {
-        /**
-         *   Clear the GUI of all moveable Cards and JButtons to prepare for reordered
-         *   display
-         */
-        for( JPanel jp : colPanels )
+        GameEvents.RefreshEvent event =
+            Metrics.recording() ? new GameEvents.RefreshEvent() : null;
+        if( event != null )
         {
-            jp.removeAll();
+            event.begin();
+            event.columns = Integer.bitCount( changed & 0xFF );
+            event.freeCells = ( changed & FREE_CELLS_CHANGED ) != 0;
+            event.piles = ( changed & PILES_CHANGED ) != 0;
         }
-        freeCellPanel.removeAll();
-        removePilePanel.removeAll();
-        
-        /**
-         *   Nested for loops based on the constant number of columns (8) and the varying
-         *   number of cards in each column (determined by the size() method) fill each
-         *   grid in the GUI with the Cards from the corresponding ArrayList in the
-         *   columns Array
-         */
+        long began = System.nanoTime();
         for( int col = 0; col < 8; col++ )
         {
-            for( int row = 0; row < columns[ col ].size(); row++ )
+            if( ( changed & 1 << col ) != 0 )
             {
-                colPanels[ col ].add( ( JButton )columns[ col ].get( row ) );
+                refreshColumn( col );
             }
         }
-        
-        /**
-         *   For any columns that are empty, add the placeholder Button so user
-         *   has a component to interact with when returning Cards to that column
-         */
-        for( int col = 0; col < 8; col++ )
+        if( ( changed & FREE_CELLS_CHANGED ) != 0 )
+        {
+            refreshFreeCells();
+        }
+        if( ( changed & PILES_CHANGED ) != 0 )
+        {
+            refreshRemovePiles();
+        }
+        if( canvas != null )
         {
-            if( columns[ col ].size() == 0 )
+            canvas.changed( changed & 0xFF, ( changed & FREE_CELLS_CHANGED ) != 0,
+                            ( changed & PILES_CHANGED ) != 0 );
+        }
+        changed = 0;
+        finishRefresh();
+        Metrics.REFRESH.record( System.nanoTime() - began );
+        if( event != null )
+        {
+            event.commit();
+        }
+    }
+    
+    /*
+     *   Bring the panel of one column up to date.  Cards at the bottom of the column
+     *   that are still shown in the right place are kept, and only the Cards after
+     *   them are removed and added, which for a move is just the end of the column.
+     *   An empty column shows its placeholder Button so user has a component to
+     *   interact with when returning Cards to that column.  With a painted board there
+     *   is no panel, and only the locations of the Cards are recorded.
+     *
+     *   @param      col           integer index of the column
+     */
+    private void refreshColumn( int col )
+    {
+        if( canvas != null )
+        {
+            for( int row = 0; row < board.columnLength( col ); row++ )
             {
-                columns[ col ].add( colPlaceholderButtons[ col ] );
-                colPanels[ col ].add( ( JButton ) columns[ col ].get( 0 ) );
+                locations.put( gameDeck[ board.cardAt( col, row ) ],
+                               location( Board.COLUMN, col ) );
             }
+            return;
         }
-        
-        /**
-         *   Add the Cards or Buttons in both the free cells and remove piles Arrays
-         */
+        JPanel panel = colPanels[ col ];
+        int length = board.columnLength( col );
+        int keep = 0;
+        while( keep < length && keep < panel.getComponentCount() &&
+               panel.getComponent( keep ) == gameDeck[ board.cardAt( col, keep ) ] )
+        {
+            keep++;
+        }
+        while( panel.getComponentCount() > keep )
+        {
+            panel.remove( panel.getComponentCount() - 1 );
+        }
+        for( int row = keep; row < length; row++ )
+        {
+            Card c = gameDeck[ board.cardAt( col, row ) ];
+            locations.put( c, location( Board.COLUMN, col ) );
+            panel.add( c );
+        }
+        if( length == 0 )
+        {
+            panel.add( colPlaceholderButtons[ col ] );
+        }
+        panel.revalidate();
+        panel.repaint();
+    }
+    
+    /*
+     *   Fill the free cells Array with the Cards the board holds there, or with the
+     *   placeholder Buttons where they are empty.  The panel of 4 cells is rebuilt
+     *   only if one of them changed.
+     */
+    private void refreshFreeCells()
+    {
         for( int i = 0; i < 4; i++ )
         {
-            freeCellPanel.add( freeCells[ i ] );
-            removePilePanel.add( removePiles[ i ] );
+            byte cell = board.freeCell( i );
+            freeCells[ i ] = cell == Board.EMPTY ? freeCellButtons[ i ] :
+                             gameDeck[ cell ];
+            if( cell != Board.EMPTY )
+            {
+                locations.put( gameDeck[ cell ], location( Board.FREE_CELL, i ) );
+            }
         }
-        
-        /**
-         *   Reset other game data,  After a move is complete and we update the position
-         *   of components, there should be no message displayed and the selected variable
-         *   should be cleared to fit the next selection.
-         */
+        refreshSlots( freeCellPanel, freeCells );
+    }
+    
+    /*
+     *   Fill the remove piles Array with the top Card of each pile, or with the
+     *   placeholder Buttons where no pile has been started.
+     */
+    private void refreshRemovePiles()
+    {
+        for( int i = 0; i < 4; i++ )
+        {
+            byte pile = board.removePile( i );
+            removePiles[ i ] = pile == Board.EMPTY ? removePileButtons[ i ] :
+                               gameDeck[ pile ];
+            locations.put( removePiles[ i ], location( Board.REMOVE_PILE, i ) );
+        }
+        refreshSlots( removePilePanel, removePiles );
+    }
+    
+    /*
+     *   Make a panel of 4 slots show the JButtons in an Array, in order.  Adding a Card
+     *   to a panel takes it out of the panel it was in, so the slots are compared first
+     *   and the panel is only rebuilt if any of them differ.  A painted board has no
+     *   such panels.
+     *
+     *   @param      panel         JPanel of the free cells or remove piles
+     *   @param      slots         JButton [] the panel should show
+     */
+    private void refreshSlots( JPanel panel, JButton [] slots )
+    {
+        if( canvas != null )
+        {
+            return;
+        }
+        boolean same = panel.getComponentCount() == slots.length;
+        for( int i = 0; same && i < slots.length; i++ )
+        {
+            same = panel.getComponent( i ) == slots[ i ];
+        }
+        if( ! same )
+        {
+            panel.removeAll();
+            for( JButton b : slots )
+            {
+                panel.add( b );
+            }
+        }
+        panel.revalidate();
+        panel.repaint();
+    }
+    
+    /*
+     *   Reset other game data after the panels are up to date.  After a move is
+     *   complete there should be no message displayed and the selected variable should
+     *   be cleared to fit the next selection.  Because this runs after each move, this
+     *   is a perfect time to check for a completed game.  If the game is won, display
+     *   the WIN message.  Undo and Redo are only enabled when there is a move for them,
+     *   and the hint engine starts on the new position, unless a game is being
+     *   replayed and the position will not last.
+     */
+    private void finishRefresh()
+    {
         displayLabel.setText( BLANK );
         selected = null;
-        
-        /**
-         *   Revalidate and repaint so updates will be visible
-         */
-        revalidate();
-        repaint();
-        
-        /**
-         *   Because refresh is called after each move, this is a perfect time to check
-         *   for a completed game.  If it returns true, then display WIN message.
-         */
+        undoButton.setEnabled( journal.canUndo() );
+        redoButton.setEnabled( journal.canRedo() );
+        hintWanted = false;
+        if( ! replaying )
+        {
+            hints.positionChanged( board );
+        }
         if( gameWon() )
         {
             displayLabel.setText( WIN );
@@ -334,27 +590,26 @@ public class FreeCell extends JFrame
      */
     public boolean gameWon()
     {
-        for( int col = 0; col < 8; col++ )
+        /**
+         *   If each column is empty or ordered all the way to the bottom Card, the game
+         *   is won.  If there are any columns where this is not true, then the game is
+         *   not won.
+         */
+        GameEvents.WinCheckEvent event =
+            Metrics.recording() ? new GameEvents.WinCheckEvent() : null;
+        if( event != null )
         {
-            /**
-             *   If the first element in a column is not a Card object, then the column
-             *   is clear and has no more cards that need to be revealed.
-             */
-            if( ! ( columns[ col ].get( 0 ) instanceof Card ) )
-            {
-                continue;
-            }
-            /**
-             *   If each column is ordered all the way to the bottom Card, aka the first
-             *   element, the game is won.  If there are any columns where this is
-             *   not true, then the game is not won.
-             */
-            if( ! topIsOrdered( ( Card ) columns[ col ].get( 0 ) ) )
-            {
-                return false;
-            } 
+            event.begin();
+        }
+        long began = System.nanoTime();
+        boolean won = board.isWon();
+        Metrics.WIN_CHECK.record( System.nanoTime() - began );
+        if( event != null )
+        {
+            event.won = won;
+            event.commit();
         }
-        return true;
+        return won;
     }
     
      /*
@@ -390,7 +645,11 @@ public class FreeCell extends JFrame
                           "1 card at a time, but if there are enough free cells" + 
                           " they will automatically move to the \n" +
                           "empty cells and return in order once you have moved" + 
-                          " the card at the bottom of the stack.\n\n" +
+                          " the card at the bottom of the stack.\n" +
+                          "Each empty column doubles the size of stack you can " +
+                          "move, so with f empty free cells and\n" +
+                          "e empty columns you can move ( f + 1 ) x 2^e cards, " +
+                          "or half that into an empty column.\n\n" +
                           "Keep an eye on the display above the 8 columns.  " + 
                           "It will let you know when you have\n" +
                           "selected a card, if you have accidentally attempted" + 
@@ -405,7 +664,18 @@ public class FreeCell extends JFrame
                           "time by pressing the Instructions button,\n" +
                           "and if you want to play again after winning or getting" + 
                           " stuck, you can Deal a new game\n" +
-                          "whenever you want.\n\n" +
+                          "whenever you want.  Every deal has a number, shown " + 
+                          "in the title, and entering the same\n" +
+                          "number again deals the same game.\n\n" +
+                          "Undo takes back your last move, as many times as " +
+                          "you like, and Redo plays it\n" +
+                          "again, until you make a different move.\n\n" +
+                          "With Auto-play checked, after each move any card " +
+                          "that no other card could still need\n" +
+                          "goes to its pile by itself.  Undo takes those back " +
+                          "together with your move.\n\n" +
+                          "Hint shows a move that leads to a win, if one " +
+                          "can be found from where you are.\n\n" +
                           "Good luck!";
         JOptionPane.showMessageDialog( null, theRules );
     }
@@ -422,166 +692,344 @@ public class FreeCell extends JFrame
     /*
      *   Execute a move to the playing area of a single card, or of multiple cards if 
      *   they are in proper order and color arrangement and if the amount of free cells 
-     *   permits.
+     *   permits.  The board moves the whole run of Cards at once.
      *
      *   @param      destination   the Card on top of which the selected Card(s) will move
      */
     public void moveToPlayingArea( Card destination )
     {
-        /**
-         *   Get relevant indexes in easier to use variables.
-         */
-        int selCol = selected.getCol();
-        int selRow = selected.getRow(); 
-        int destCol = destination.getCol();
-        int destRow = destination.getRow() + 1;
-        /**
-         *   First determine if selected card is currently in a free cell because if so 
-         *   its indexes must be processed differently.
-         */
-        if( selRow == -1 )
+        moveSelected( Board.COLUMN, colOf( destination ) );
+    }
+    
+    /*
+     *   Similar to moveToPlayingArea in that it must be able to move multiple Cards,
+     *   but the destination is a column with no Cards, shown by its placeholder JButton.
+     *
+     *   @param         col        integer of Array index of column chosen
+     */    
+    public void moveToEmptyColumn( int col )
+    {    
+        moveSelected( Board.COLUMN, col );
+    }
+    
+    /*
+     *   Any single selected Card can be moved to a free cell.  The selected card is
+     *   placed in free cell i and removed from the column it was just in (or from the
+     *   free cell it was just in, which is a legal albeit pointless move.)
+     *
+     *   @param     i               integer value of Array index of chosen free cell
+     */
+    public void moveToFreeCells( int i )
+    {
+        moveSelected( Board.FREE_CELL, i );
+    }
+    
+    /*
+     *   Remove Cards from gameplay and free up space for more moves.
+     *
+     *   @param      i        integer of Array index of chosen remove pile
+     */
+    public void removeToPile( int i )
+    {
+        moveSelected( Board.REMOVE_PILE, i );
+    }
+    
+    /*
+     *   Have the board execute a move of the selected Card, and every Card on top of
+     *   it, to a destination, then update the GUI.  With auto-play on, every Card
+     *   that is then safe to remove goes to its remove pile first, and the display is
+     *   updated once for the whole cascade.
+     *
+     *   @param      destZone      Board.COLUMN, Board.FREE_CELL, or Board.REMOVE_PILE
+     *   @param      destIndex     integer index of destination within its zone
+     */
+    private void moveSelected( int destZone, int destIndex )
+    {
+        play( Moves.pack( selectedZone(), colOf( selected ), cardsOnTop( selected ) + 1,
+                          destZone, destIndex ) );
+        if( autoPlayBox.isSelected() )
         {
-            columns[ destCol ].add( selected );
-            freeCells[ selCol ] = freeCellButtons[ selCol ];
-            selected.setCol( destCol );
-            selected.setRow( destRow );
+            autoPlay();
         }
-        /**
-         *   Selected card must be in the playing area so its indexes can be processed
-         *   the conventional way.
-         */
-        else
+        refreshChanged();
+    }
+    
+    /*
+     *   Play a move on the board and journal it, noting the places it touches for the
+     *   next refresh.  Every move of a game goes through here, whether the player
+     *   clicked it or it is replayed from an archive.
+     *
+     *   @param      move          packed move that check has passed
+     */
+    private void play( int move )
+    {
+        GameEvents.MoveEvent event =
+            Metrics.recording() ? new GameEvents.MoveEvent() : null;
+        if( event != null )
+        {
+            event.begin();
+        }
+        long began = System.nanoTime();
+        board.move( move );
+        journal.record( move );
+        markChanged( move );
+        Metrics.MOVE.record( System.nanoTime() - began );
+        if( event != null && event.shouldCommit() )
+        {
+            event.move = Moves.toString( move );
+            event.automatic = Moves.isAutomatic( move );
+            event.commit();
+        }
+    }
+    
+    /*
+     *   Deal a numbered game and play a list of moves on it, such as a game read from
+     *   an archive, then show the position reached.  The list already holds any Cards
+     *   auto-play removed, so auto-play is not run.  Replaying stops at the first move
+     *   the board does not allow, and the display says so.  The hint engine only
+     *   searches the position the replay ends in.
+     *
+     *   @param      number        deal number of the game
+     *   @param      moves         int [] of packed moves
+     *   @param      count         number of moves in the Array to play
+     */
+    public void replayGame( long number, int [] moves, int count )
+    {
+        replaying = true;
+        dealCards( number );
+        replaying = false;
+        for( int i = 0; i < count; i++ )
+        {
+            if( board.check( moves[ i ] ) != Board.LEGAL )
+            {
+                refreshChanged();
+                notALegalMove();
+                return;
+            }
+            play( moves[ i ] );
+        }
+        refreshChanged();
+    }
+
+    /*
+     *   Turn the background hint engine on or off.  With it off no Solver runs while
+     *   the game is played, and asking for a hint finds none.
+     *
+     *   @param      on            boolean, false to stop looking for hints
+     */
+    public void setHintsEnabled( boolean on )
+    {
+        hints.setEnabled( on );
+        if( on )
+        {
+            hints.positionChanged( board );
+        }
+    }
+    
+    /*
+     *   Basic setter.  Gives the game an archive to add each game to when it ends,
+     *   by a new deal or by closing the game.
+     *
+     *   @param      writer        GameArchiveWriter to append to, or null for none
+     */
+    public void setArchive( GameArchiveWriter writer )
+    {
+        archive = writer;
+    }
+    
+    /*
+     *   Add the game being played to the archive, if there is one and any moves have
+     *   been played.  A failure to write is reported but does not stop the game.
+     */
+    public void archiveGame()
+    {
+        if( archive == null || journal.length() == 0 )
+        {
+            return;
+        }
+        try
+        {
+            archive.append( dealNumber, journal.toArray(), journal.length() );
+            archive.flush();
+        }
+        catch( IOException e )
+        {
+            System.err.println( "Could not archive game #" + dealNumber + ": " + e );
+        }
+    }
+    
+    /*
+     *   Move every Card that is safe to remove to the remove piles, repeating until no
+     *   more can go.  A Card is safe when every Card of the opposite color that could
+     *   still be placed on it is already on a remove pile, so it will never be needed
+     *   in the playing area again.  The moves are played on the board and journaled
+     *   as part of the player's move, and the places they touch are noted for the
+     *   next refresh, but nothing is drawn here.
+     */
+    private void autoPlay()
+    {
+        int played = Solver.autoPlay( board, autoMoves, 0 );
+        for( int i = 0; i < played; i++ )
+        {
+            journal.record( autoMoves[ i ] | Moves.AUTOMATIC );
+            markChanged( autoMoves[ i ] );
+        }
+    }
+    
+    /*
+     *   Take back the last move, or play again the last move taken back, and update
+     *   the places it touched.  The Cards auto-play removed after a move are taken
+     *   back and played again along with it.  Any Card selected is let go.
+     */
+    public void undoMove()
+    {
+        if( ! journal.canUndo() )
+        {
+            return;
+        }
+        int move;
+        do
+        {
+            move = journal.undo( board );
+            markChanged( move );
+        }
+        while( Moves.isAutomatic( move ) && journal.canUndo() );
+        refreshChanged();
+    }
+    
+    public void redoMove()
+    {
+        if( ! journal.canRedo() )
+        {
+            return;
+        }
+        markChanged( journal.redo( board ) );
+        while( journal.canRedo() && Moves.isAutomatic( journal.nextRedo() ) )
         {
-            /**
-             *   Handle the possibility of multiple cards moving.  If this method was 
-             *   called, the Cards on top must be ordered properly or the Card could not
-             *   have been selected in the first place, and there must be enough free
-             *   cells.  The Card in the selected variable is reassigned each time using
-             *   the same coordinates because as the highest ranked cards are moved,
-             *   the lower ones that were on top fall back to take that index.  Therefore
-             *   the only variable that needs to be updated in this loop is the
-             *   destination row so the Cards can properly save their index variables
-             *   to higher stacked rows.
-             */
-            for( int i = cardsOnTop( selected ); i >= 0; i-- )
-            {
-                selected = ( Card ) columns[ selCol ].get( selRow );
-        
-                columns[ destCol ].add( columns[ selCol ].remove( selRow ) );
-        
-                selected.setCol( destCol );
-                selected.setRow( destRow );
-        
-                destRow ++;
-            }
+            markChanged( journal.redo( board ) );
         }
-        refreshDisplay();
+        refreshChanged();
     }
     
     /*
-     *   Similar to moveToPlayingArea in that it must be able to move multiple Cards.
-     *   Must be handled differently because in this case we have to remove the
-     *   placeholder JButton before doing anything else.   Separate cases for selected
-     *   Cards coming from free cells or from playing area.
-     *
-     *   @param         col        integer of Array index of column chosen
-     */    
-    public void moveToEmptyColumn( int col )
-    {    
-        /**
-         *   Get relevant indexes in easier to use variables.
-         */
-        int selCol = selected.getCol();
-        int selRow = selected.getRow();
-        int destRow = 0;
-        /**
-         *   Start by determining if selected Card is in free cells area.  If so, indexes 
-         *   need to be processed differently.
-         */
-        if( selRow == -1 )
+     *   Show the hint engine's best next move for the position.  The engine has been
+     *   searching since the last move, so the hint is usually ready at once.  If it
+     *   is not, say so, and show it as soon as the search finishes.  Never waits.
+     */
+    public void showHint()
+    {
+        if( gameWon() )
         {
-            columns[ col ].remove( 0 );
-            columns[ col ].add( selected );
-            freeCells[ selCol ] = freeCellButtons[ selCol ];
-            selected.setCol( col );
-            selected.setRow( destRow );
+            displayLabel.setText( WIN );
+            return;
+        }
+        int status = hints.status();
+        hintWanted = status == HintEngine.SEARCHING;
+        if( status == HintEngine.SEARCHING )
+        {
+            displayLabel.setText( THINKING );
+        }
+        else if( status == HintEngine.NO_HINT )
+        {
+            displayLabel.setText( hints.isEnabled() ? NO_HINT : HINTS_OFF );
         }
-        /**
-         *   Selected card must be in the playing area so its indexes can be processed
-         *   the conventional way.
-         */
         else
         {
-            /**
-             *   Handle the possibility of multiple cards moving.  The Card in the 
-             *   selected variable is reassigned each time using the same coordinates 
-             *   because as the highest ranked cards are moved, the lower ones that were 
-             *   on top fall back to take that index.  Therefore the only variable that 
-             *   needs to be updated in this loop is the destination row, initially set
-             *   to 0 because we are building a new column, so the Cards can properly 
-             *   save their index variables to higher stacked rows.
-             */
-            columns[ col ].remove( 0 );
-            for( int i = cardsOnTop( selected ); i >= 0; i-- )
-            {
-                selected = ( Card ) columns[ selCol ].get( selRow );
-                columns[ col ].add( columns[ selCol ].remove( selRow ) );
-                selected.setCol( col );
-                selected.setRow( destRow );
-                destRow ++;
-            }
+            displayLabel.setText( "Hint: " + describe( hints.hint() ) );
         }
-        refreshDisplay();
     }
     
     /*
-     *   Any single selected Card can be moved to a free cell, so only need to test if
-     *   selected Card has any on top.  Otherwise the selected card should be placed in 
-     *   the freeCells Array at index i and removed from the column it was just in (or 
-     *   from the free cell it was just in, which is a legal albeit pointless move.)
+     *   Describe a move in the player's terms, such as "move 7H onto 8S".
      *
-     *   @param     destination     placeholder JButton chosen as destination for move
-     *   @param     i               integer value of Array index of chosen column
+     *   @param      move          packed move
+     *   @return                   String description of the move
      */
-    public void moveToFreeCells( JButton destination, int i )
+    private String describe( int move )
     {
-        if( selected.getRow() == -1)
+        int from = Moves.srcIndex( move );
+        int to = Moves.destIndex( move );
+        int row = board.columnLength( from ) - Moves.count( move );
+        byte moving = Moves.srcZone( move ) == Board.FREE_CELL ? board.freeCell( from ) :
+                      board.cardAt( from, row );
+        String text = "move " + gameDeck[ moving ];
+        if( Moves.destZone( move ) == Board.REMOVE_PILE )
         {
-            freeCells[ selected.getCol() ] = freeCellButtons[ selected.getCol() ];
-            freeCells[ i ] = selected;
-            selected.setCol( i );
+            return text + " to its pile";
         }
-        else if( cardsOnTop( selected ) == 0 )
-        {       
-            int selCol = selected.getCol();
-            int selRow = selected.getRow();
-            freeCells[ i ] = ( Card ) columns[ selCol ].remove( selRow );
-            selected.setCol( i );
-            selected.setRow( -1 );
+        if( Moves.destZone( move ) == Board.FREE_CELL )
+        {
+            return text + " to a free cell";
         }
-        refreshDisplay();
+        byte top = board.topCard( to );
+        return text + ( top == Board.EMPTY ? " to an empty column" :
+                                             " onto " + gameDeck[ top ] );
     }
     
     /*
-     *   Remove Cards from gameplay and free up space for more moves.  Separate cases
-     *   for removing from free cell Array or from an ArrayList from columns.
+     *   Ask the board whether the selected Card, and every Card on top of it, can move
+     *   to a destination.
      *
-     *   @param      i        integer of Array index of chosen remove pile
+     *   @param      destZone      Board.COLUMN, Board.FREE_CELL, or Board.REMOVE_PILE
+     *   @param      destIndex     integer index of destination within its zone
+     *   @return                   Board.LEGAL, or the reason the move is not allowed
      */
-    public void removeToPile( int i )
+    private int checkSelected( int destZone, int destIndex )
     {
-        int selCol = selected.getCol();
-        int selRow = selected.getRow();
-        if( selRow == -1 )
+        GameEvents.MoveCheckEvent event =
+            Metrics.recording() ? new GameEvents.MoveCheckEvent() : null;
+        if( event != null )
         {
-            removePiles[ i ] = selected;
-            freeCells[ selCol ] = freeCellButtons[ selCol ];
+            event.begin();
         }
-        else
+        long began = System.nanoTime();
+        int move = Moves.pack( selectedZone(), colOf( selected ),
+                               cardsOnTop( selected ) + 1, destZone, destIndex );
+        int result = board.check( move );
+        Metrics.MOVE_CHECK.record( System.nanoTime() - began );
+        if( event != null && event.shouldCommit() )
         {
-            removePiles[ i ] = ( Card ) columns[ selCol ].remove( selRow );
+            event.move = Moves.toString( move );
+            event.result = result;
+            event.commit();
         }
-        refreshDisplay();
+        return result;
+    }
+    
+    /*
+     *   A selected Card is either in the free cells or in the playing area, as its
+     *   recorded location says.
+     *
+     *   @return                   Board.FREE_CELL or Board.COLUMN
+     */
+    private int selectedZone()
+    {
+        return locations.get( selected ) & 3;
+    }
+    
+    /*
+     *   Index of the column or free cell a Card is in.  Cards keep no position of
+     *   their own; it comes from the location recorded when the Card was last shown.
+     *
+     *   @param      c             Card shown in a column or free cell
+     *   @return                   integer index within its zone
+     */
+    private int colOf( Card c )
+    {
+        return locations.get( c ) >>> 2;
+    }
+    
+    /*
+     *   Row of a Card in its column, found on the board.
+     *
+     *   @param      c             Card to find
+     *   @return                   integer row index, or -1 if the Card is not in a column
+     */
+    private int rowOf( Card c )
+    {
+        int where = locations.get( c );
+        return ( where & 3 ) == Board.COLUMN ? board.rowOf( where >>> 2, c.getCode() ) :
+               -1;
     }
     
     /*
@@ -592,35 +1040,8 @@ public class FreeCell extends JFrame
      */
     public int getFreeCells()
     {
-        int count = 0;
-        for( int col = 0; col < 8; col++ )
-        {
-            /**
-             *   Count empty columns.  If a column is empty, the ArrayList will have 
-             *   exactly one element, and it will be a JButton, not a Card.
-             */
-            if( ( columns[ col ].size() == 1 ) && 
-                ! ( columns[ col ].get( 0 ) instanceof Card ) )
-            {
-                count++;
-            }
-        }
-        
-        for( int i = 0; i < 4; i++ )
-        {
-            /**
-             *   Count empty free cells.  A free cell is empty if it contains a 
-             *   placeholder  JButton, as opposed to being filled by a Card.
-             */
-            if( ! ( freeCells[ i ] instanceof Card ) )
-            {
-                count++;
-            }
-        }
-        return count;
+        return board.getFreeCells();
     }
-        
-        
     
     /*
      *   Determine how many Cards are on top, useful for comparison to number of free
@@ -635,67 +1056,42 @@ public class FreeCell extends JFrame
          *   If Card is in free cell Array, automatically return 0 since the cells by
          *   default hold single Cards, not stacks
          */
-        if( c.getRow() == -1 )
+        int row = rowOf( c );
+        if( row == -1 )
         {
             return 0;
         }
-        /**
-         *   If Card is in playing area, use stored index values and size of column to
-         *   calculate how many are between this Cards's position and top of pile.
-         */
-        else
-        {
-            int col = c.getCol();
-            int difference = columns[ col ].size() - c.getRow() -1;
-            return difference;
-        }
+        return board.cardsOnTop( colOf( c ), row );
     }
     
     /*
-     *   Method to find the Card immediately on top of an input Card.  Relies on saved
-     *   index values in the Card object, and increments the row to find the next.
-     *   Needed for the topIsOrdered method to judge the relationship between each
-     *   successive pair of Cards.
+     *   Method to find the Card immediately on top of an input Card.  Finds the row of
+     *   the Card on the board, and increments the row to find the next.
      *
      *   @param     c        the Card which is reference point to the one above it.
      *   @return             the next Card directly on top of input Card
      */
     public Card nextCardUp( Card c )
     {
-        int newCol = c.getCol();
-        int newRow = c.getRow() + 1;
-        Card nextCard = ( Card )( columns[ newCol ].get( newRow ) );
-        return nextCard;
+        return gameDeck[ board.cardAt( colOf( c ), rowOf( c ) + 1 ) ];
     }
     
     /*
      *   Test if input Card is covered only by ordered Cards.  Must be ordered both in
-     *   descending numerical order, and alternating color order.  Recursive method tests
-     *   one relationship at a time.  If any relationship between 2 cards does not match,
-     *   the whole method returns false.  If we get to (or start at) a point where there
-     *   are no cards on top, everything must be ordered and returns true.
+     *   descending numerical order, and alternating color order.  A Card in a free
+     *   cell has nothing on top, so it is always ordered.
      *
      *   @param    c      Card to be tested whether it is covered only by ordered Cards
      *   @return           boolean whether or not this condition of being ordered is true
      */
     public boolean topIsOrdered( Card c )
     {
-        if( cardsOnTop( c ) == 0 )
+        int row = rowOf( c );
+        if( row == -1 )
         {
             return true;
         }
-        else
-        {
-            Card top = nextCardUp( c );
-            if( ( c.compareRank( top ) == 1 ) && ( ! c.sameColor( top ) ) )
-            {
-                return topIsOrdered( top );
-            }
-            else
-            {
-                return false;
-            }
-        }
+        return board.topIsOrdered( colOf( c ), row );
     }
     
     /*
@@ -708,78 +1104,43 @@ public class FreeCell extends JFrame
     
     /*
      *   Source is in free cells area and a Card is already selected.
-     *   If the Object is a Card, then that slot is already taken and it is an illegal 
-     *   move, or if there are any Cards on top of the selected Card it is also illegal
-     *   because a cell only has space for one.  
+     *   If the cell already holds a Card, it is an illegal move, or if there are any
+     *   Cards on top of the selected Card it is also illegal because a cell only has
+     *   space for one.  
      *
      *   @param     o       Object (Card or JButton) clicked to be destination of move
      *   @param     i       integer index of free cell Array to be destination of move
      */
     public void sourceFreeCellsSelected( Object o, int i )
     {
-        /**
-         *   Make sure cell is not filled by a card and that selected has no cards on top.
-         *   In order to test how many cards are on top, first make sure it is in
-         *   playing area or otherwise Card's index variables will not work with
-         *   cardsOnTop method.
-         */
-        if( o instanceof Card || cardsOnTop( selected ) > 0 )
+        if( checkSelected( Board.FREE_CELL, i ) == Board.LEGAL )
         {
-            notALegalMove();
+            moveToFreeCells( i );
         }
-        /**
-         *   If it passes both tests, execute the move to the empty cell (actually
-         *   a placeholder JButton.)
-         */
         else
         {
-            moveToFreeCells( ( JButton ) o, i );
+            notALegalMove();
         }
     }
     
     /*
-     *   Source is in remove piles area and a Card is already selected.  If Object is a
-     *   Card, then Cards have already been moved to this pile and selected Card must
-     *   be of same suit and valued exactly 1 rank higher to be added to the pile,
-     *   otherwise it is an illegal move.  If Object is not a Card, it is one of the
-     *   placeholder buttons that can be replaced by an Ace (aka a Card of value 1) of 
-     *   any suit.
+     *   Source is in remove piles area and a Card is already selected.  If the pile
+     *   has Cards already, selected Card must be of same suit and valued exactly 1 rank
+     *   higher to be added to the pile, otherwise it is an illegal move.  If the pile
+     *   is empty, it can be started by an Ace (aka a Card of value 1) of any suit.
      *
      *   @param      o     the Object (Card or JButton) chosen to remove a Card to
      *   @param      i     the integer index value of remove piles Array chosen
      */
     public void sourceRemovePilesSelected( Object o, int i )
     {
-        /**
-         *   Start by seeing if pile has Cards already, and testing to see in selected
-         *   Card matches the conditions to be added to pile.  If so, execute move.
-         */
-        if( o instanceof Card )
+        if( checkSelected( Board.REMOVE_PILE, i ) == Board.LEGAL )
         {
-            Card pile = ( Card ) o;
-            if( selected.sameSuit( pile ) && ( selected.compareRank( pile ) == 1 ) )
-            {
-                removeToPile( i );
-            }
-            else
-            {
-                notALegalMove();
-            }
+            removeToPile( i );
         }
-        /**
-         *   If a pile has not been started, see if selected Card is an Ace (has a value
-         *   of 1), and if so, execute move.
-         */
         else
         {
-            if( selected.getValue() == 1 )
-            {
-                removeToPile( i );
-            }
-            else
-            {
-                notALegalMove();
-            }
+            notALegalMove();
         }
     }
     
@@ -787,62 +1148,54 @@ public class FreeCell extends JFrame
      *   A card is selected and an empty column has been chosen as a destination.  There
      *   are none of the ordinary restrictions about destination Card being in the 
      *   matching order because there is no destination Card, it is blank.  However the
-     *   number of free cells must be calculated slightly differently.
+     *   stack must fit in a supermove that cannot use this column as an interim
+     *   holding place, because the column will immediately be filled by the selected
+     *   Card.
      *
      *   @param      col      the integer index of the empty column chosen as destination
      */
     public void sourceEmptyColumnSelected( int col )
     {
-        /**
-         *   In this case, the number of free cells must be strictly greater than the
-         *   number of Cards on top of the selected Card, as opposed to greater that
-         *   or equal to.  This is because, while the column is blank at the time of
-         *   this test, it will immediately be filled by the selected Card and can no
-         *   longer serve as an interim holding place for the cards on top.
-         */
-        if( getFreeCells() > cardsOnTop( selected ) )
+        int result = checkSelected( Board.COLUMN, col );
+        if( result == Board.LEGAL )
         {
             moveToEmptyColumn( col );
         }
         else
         {
-            notEnoughFreeCells();
+            moveRejected( result );
         }
     }
     
     /*
      *   The most common move in gameplay, and also the one with the most restrictions.
-     *   Tests them all before proceeding.  Selected Card must be covered only by Cards
-     *   in descending number and alternating color order (or not covered), the clicked
-     *   Card must be of opposite color from the one stored in selected, the clicked Card
-     *   must be exactly 1 number higher in rank than the selected Card, and the
-     *   Card clicked to be the destination must have no other Cards covering it.  If
-     *   Any one of these conditions is not met the move is outright illegal.  Finally,
-     *   the number of free cells is calculated and compared to the number of Cards on
-     *   top of selected.  If this condition is not met, the move still cannot execute,
-     *   but the user is notified that the move would be valid if not for this reason.
+     *   Selected Card must be covered only by Cards in descending number and
+     *   alternating color order (or not covered), the clicked Card must be of opposite
+     *   color from the one stored in selected, the clicked Card must be exactly 1
+     *   number higher in rank than the selected Card, and the Card clicked to be the
+     *   destination must have no other Cards covering it.  If any one of these
+     *   conditions is not met the move is outright illegal.  Finally, the size of the
+     *   stack is compared to the most the free cells and empty columns can carry in a
+     *   supermove.  If this condition is not met, the move still cannot execute, but
+     *   the user is notified that the move would be valid if not for this reason.
      *
      *   @param      destination  the Card chosen to be the destination of a move
      */
     public void sourcePlayingAreaSelected( Card destination )
     {
-        if( ( ( topIsOrdered( selected ) ) && ( ! destination.sameColor( selected ) ) &&
-            ( destination.compareRank( selected ) == 1 ) && 
-            ( cardsOnTop( destination ) == 0 ) ) )
+        if( rowOf( destination ) == -1 || cardsOnTop( destination ) != 0 )
         {
-            if( ( getFreeCells() >= cardsOnTop( selected ) ) || selected.getRow() == -1 )
-            {
-                moveToPlayingArea( destination );
-            }
-            else
-            {
-                notEnoughFreeCells();
-                return;
-            }
+            notALegalMove();
+            return;
+        }
+        int result = checkSelected( Board.COLUMN, colOf( destination ) );
+        if( result == Board.LEGAL )
+        {
+            moveToPlayingArea( destination );
         }
         else
         {
-            notALegalMove();
+            moveRejected( result );
         }
     }
     
@@ -928,26 +1281,151 @@ public class FreeCell extends JFrame
         selected = null;
     }
     
+    /*
+     *   Notify user of the reason the board gave for refusing a move.
+     *
+     *   @param      result      Board.NOT_A_LEGAL_MOVE or Board.NOT_ENOUGH_FREE_CELLS
+     */
+    public void moveRejected( int result )
+    {
+        if( result == Board.NOT_ENOUGH_FREE_CELLS )
+        {
+            notEnoughFreeCells();
+        }
+        else
+        {
+            notALegalMove();
+        }
+    }
+    
+    /*
+     *   Pack a zone and an index into a location.
+     *
+     *   @param      zone          Board.COLUMN, Board.FREE_CELL, Board.REMOVE_PILE, or
+     *                             CONTROLS
+     *   @param      index         integer index within the zone
+     *   @return                   packed location
+     */
+    public static int location( int zone, int index )
+    {
+        return zone | index << 2;
+    }
+    
+    /*
+     *   Find where a clickable component is.  A scripted player can use this, with
+     *   componentAt, to drive the game through determineSource just as clicks do.
+     *
+     *   @param      o             the Object (Card or JButton) to find
+     *   @return                   packed location, or -1 if o is not part of the game
+     */
+    public int locationOf( Object o )
+    {
+        Integer where = locations.get( o );
+        return where == null ? -1 : where;
+    }
+    
+    /*
+     *   Find the component shown at a place on the board: the Card at the end of a
+     *   column or its placeholder, or what a free cell or remove pile shows.
+     *
+     *   @param      zone          Board.COLUMN, Board.FREE_CELL, or Board.REMOVE_PILE
+     *   @param      index         integer index within the zone
+     *   @return                   the JButton to click for that place
+     */
+    public JButton componentAt( int zone, int index )
+    {
+        if( zone == Board.FREE_CELL )
+        {
+            return freeCells[ index ];
+        }
+        if( zone == Board.REMOVE_PILE )
+        {
+            return removePiles[ index ];
+        }
+        byte top = board.topCard( index );
+        return top == Board.EMPTY ? colPlaceholderButtons[ index ] : gameDeck[ top ];
+    }
+    
+    /*
+     *   Find the Card with a given code, to click a Card deeper in a column.
+     *
+     *   @param      code          code of the Card, as used by Board
+     *   @return                   the Card
+     */
+    public Card cardFor( int code )
+    {
+        return gameDeck[ code ];
+    }
+    
     /*
      *   Determine which method to call based on which button or Card was picked, whether 
      *   a Card is currently selected, and which area (playing area, free cells, or
-     *   remove piles) the clicked button or Card is currently in.
+     *   remove piles) the clicked button or Card is currently in.  The area comes
+     *   straight from the location recorded for the component.  Anything that is not
+     *   part of the game is ignored.  Each click is timed in Metrics and recorded as a
+     *   GameEvents.ClickEvent.
      *
      *   @param         o       the Object (Card or JButton) that triggered an ActionEvent
      */
     public void determineSource( Object o )
     {
-        /**
-         *   New game and instructions are independent of whether Card is selected.
-         */
-        if( newGameButton == o )
+        Integer where = locations.get( o );
+        if( where == null )
         {
-            dealCards( shuffle( gameDeck ) );
             return;
         }
-        if( rulesButton == o )
+        GameEvents.ClickEvent event =
+            Metrics.recording() ? new GameEvents.ClickEvent() : null;
+        if( event != null )
+        {
+            event.begin();
+            event.zone = where & 3;
+            event.index = where >>> 2;
+            event.selected = selected != null;
+        }
+        long began = System.nanoTime();
+        dispatch( o, where & 3, where >>> 2 );
+        Metrics.CLICK.record( System.nanoTime() - began );
+        if( event != null )
+        {
+            event.commit();
+        }
+    }
+    
+    /*
+     *   The work of determineSource, once the place clicked is known.
+     *
+     *   @param         o       the Object (Card or JButton) that was clicked
+     *   @param         zone    Board zone or CONTROLS
+     *   @param         index   integer index of the place within its zone
+     */
+    private void dispatch( Object o, int zone, int index )
+    {
+        /**
+         *   New game and instructions are independent of whether Card is selected.
+         */
+        if( zone == CONTROLS )
         {
-            displayRules();
+            if( index == NEW_GAME )
+            {
+                chooseDeal();
+            }
+            else if( index == RULES )
+            {
+                displayRules();
+            }
+            else if( index == HINT )
+            {
+                showHint();
+            }
+            else if( index == UNDO )
+            {
+                undoMove();
+            }
+            else
+            {
+                redoMove();
+            }
             return;
         }
         /**
@@ -964,91 +1442,42 @@ public class FreeCell extends JFrame
             {
                 displayLabel.setText( BLANK );
                 selected = null;
-                return;
             }
-            /**
-             *   See if source (Card or JButton) is in free cells area
-             */
-            for( int i = 0; i < 4; i++ )
+            else if( zone == Board.FREE_CELL )
             {
-                if( freeCells[ i ] == o )
-                {
-                    sourceFreeCellsSelected( o, i );
-                    return;
-                }
+                sourceFreeCellsSelected( o, index );
             }
-            /**
-             *   See if source (Card or JButton) is in remove piles cells area
-             */
-            for( int i = 0; i < 4; i++ )
+            else if( zone == Board.REMOVE_PILE )
             {
-                if( removePiles[ i ] == o )
-                {
-                    sourceRemovePilesSelected( o, i );
-                    return;
-                }
+                sourceRemovePilesSelected( o, index );
             }
-            
-            for( int col = 0; col < 8; col++ )
+            else if( o instanceof Card )
             {
-                if( colPlaceholderButtons[ col ] == o )
-                {
-                    sourceEmptyColumnSelected( col );
-                    return;
-                }
+                sourcePlayingAreaSelected( ( Card ) o );
+            }
+            else
+            {
+                sourceEmptyColumnSelected( index );
             }
-            
-            /**
-             *   The source must be in playing area, and must be a Card
-             */
-             Card clicked = ( Card ) o;
-             sourcePlayingAreaSelected( clicked );
         }
         /**
          *   At this point we know a Card must not be currently selected
          */
+        else if( zone == Board.FREE_CELL )
+        {
+            sourceFreeCellsNotSelected( o, index );
+        }
+        else if( zone == Board.REMOVE_PILE )
+        {
+            sourceRemovePilesNotSelected();
+        }
+        else if( o instanceof Card )
+        {
+            sourcePlayingAreaNotSelected( ( Card ) o );
+        }
         else
         {
-            /**
-             *   See if source (Card or JButton) is in free cells area
-             */
-            for( int i = 0; i < 4; i++ )
-            {
-                if( freeCells[ i ] == o )
-                {
-                    sourceFreeCellsNotSelected( o, i );
-                    return;
-                }
-            }
-            
-            /**
-             *   See if source (Card or JButton) is in remove piles area
-             */
-            for( int i = 0; i < 4; i++ )
-            {
-                if( removePiles[ i ] == o )
-                {
-                    sourceRemovePilesNotSelected();
-                    return;
-                }
-            }
-            
-            /**
-             *   See if source (Card or JButton) is an empty column placeholder
-             */
-            for( int col = 0; col < 8; col++ )
-            {
-                if( colPlaceholderButtons[ col ] == o )
-                {
-                    sourceEmptyColumnNotSelected();
-                    return;
-                }
-            }
-            /**
-             *   The source must be in playing area, and must be a Card
-             */
-             Card clicked = ( Card ) o;
-             sourcePlayingAreaNotSelected( clicked );
+            sourceEmptyColumnNotSelected();
         }
     }
     
@@ -1069,8 +1498,48 @@ public class FreeCell extends JFrame
     /*
      *   Main method calls constructor method to start the game
      */
-    public static void main( String [] args )
+    public static void main( String [] args ) throws IOException
     {
-        FreeCell thisGame = new FreeCell();
+        /**
+         *   -Dfreecell.renderer=painted draws the board as one painted component
+         *   instead of a grid of buttons.
+         */
+        FreeCell thisGame =
+            new FreeCell( "painted".equals( System.getProperty( "freecell.renderer" ) ) );
+        
+        /**
+         *   -Dfreecell.metrics=true prints the latency histograms and solver counters
+         *   when the program ends.  Flight recordings need no option here; see
+         *   GameEvents.
+         */
+        if( Boolean.getBoolean( "freecell.metrics" ) )
+        {
+            Runtime.getRuntime().addShutdownHook( new Thread( () ->
+                Metrics.report( System.err ) ) );
+        }
+        
+        /**
+         *   To keep every game played, name an archive file with
+         *   -Dfreecell.archive=path.  The game in progress is added when the program
+         *   ends.
+         */
+        String path = System.getProperty( "freecell.archive" );
+        if( path != null )
+        {
+            GameArchiveWriter writer = new GameArchiveWriter( Paths.get( path ) );
+            thisGame.setArchive( writer );
+            Runtime.getRuntime().addShutdownHook( new Thread( () ->
+            {
+                thisGame.archiveGame();
+                try
+                {
+                    writer.close();
+                }
+                catch( IOException e )
+                {
+                    System.err.println( "Could not close archive: " + e );
+                }
+            } ) );
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+/************
+ *
+ *    Memory mapped reader of archived FreeCell games.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/*
+ *   GameArchiveReader walks the GameRecords of an archive in a file mapped into
+ *   memory.  It is a cursor, not a list: next moves to the following record, and the
+ *   getters read the current one straight from the mapping, so millions of games can
+ *   be counted, filtered, or replayed without creating an object for any of them.
+ *
+ *   A single mapping cannot pass 2 GB, so the file is mapped a window at a time, and
+ *   the window moves forward when a record would run past its end.  A header cut
+ *   short at the end of the file is treated as the end of the archive.  A record
+ *   whose length runs past the end of the file throws an EOFException, so a damaged
+ *   length is never read as moves.
+ */
+public class GameArchiveReader implements Closeable
+{
+    private static final long WINDOW = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    private long next;
+    private long deal;
+    private int movesAt;
+    private int moveBytes;
+
+    /*
+     *   Constructor method.  Opens an archive for reading.
+     *
+     *   @param       file           Path of the archive
+     */
+    public GameArchiveReader( Path file ) throws IOException
+    {
+        channel = FileChannel.open( file, StandardOpenOption.READ );
+        size = channel.size();
+        map( 0 );
+    }
+
+    private void map( long start ) throws IOException
+    {
+        windowStart = start;
+        window = channel.map( FileChannel.MapMode.READ_ONLY, start,
+                              Math.min( WINDOW, size - start ) );
+    }
+
+    /*
+     *   Move to the next record.  Throws an EOFException if the record's length runs
+     *   past the end of the file, or an IOException if it is too long to map.
+     *
+     *   @return                     boolean, false when there are no more records
+     */
+    public boolean next() throws IOException
+    {
+        if( next >= size )
+        {
+            return false;
+        }
+        if( next + GameRecord.MAX_HEADER > windowStart + window.capacity() &&
+            windowStart + window.capacity() < size )
+        {
+            map( next );
+        }
+        int at = ( int ) ( next - windowStart );
+        int end = window.capacity();
+        long first = GameRecord.getVarint( window, at, end );
+        long second = first < 0 ? -1 :
+            GameRecord.getVarint( window, at + ( int ) ( first >>> 56 ), end );
+        if( second < 0 )
+        {
+            return false;
+        }
+        int header = ( int ) ( first >>> 56 ) + ( int ) ( second >>> 56 );
+        long length = second & ( 1L << 56 ) - 1;
+        if( length > size - next - header )
+        {
+            throw new EOFException( "record at " + next +
+                                    " runs past the end of the file" );
+        }
+        if( header + length > WINDOW )
+        {
+            throw new IOException( "record at " + next + " is " + length +
+                                   " bytes long" );
+        }
+        int bytes = ( int ) length;
+        if( at + header + bytes > end )
+        {
+            map( next );
+            at = 0;
+        }
+        deal = first & ( 1L << 56 ) - 1;
+        movesAt = at + header;
+        moveBytes = bytes;
+        next += header + bytes;
+        return true;
+    }
+
+    /*
+     *   @return                     deal number of the current record
+     */
+    public long deal()
+    {
+        return deal;
+    }
+
+    /*
+     *   @return                     number of bytes of moves in the current record,
+     *                               which is at least the number of moves
+     */
+    public int moveBytes()
+    {
+        return moveBytes;
+    }
+
+    /*
+     *   Read the moves of the current record as packed ints.
+     *
+     *   @param       out            int [] of at least moveBytes() to fill
+     *   @return                     number of moves written
+     */
+    public int moves( int [] out )
+    {
+        int n = 0;
+        for( int at = movesAt, end = movesAt + moveBytes; at < end;
+             at += GameRecord.sizeOf( window.get( at ) ) )
+        {
+            out[ n++ ] = GameRecord.getMove( window, at );
+        }
+        return n;
+    }
+
+    /*
+     *   Deal the game of the current record onto a Board and play its moves, with the
+     *   same Board.move that the GUI's moves run through.  Nothing is allocated.  Each
+     *   move is checked first, and the replay stops at the first one that is not legal
+     *   on the Board, so a damaged record leaves the Board in the last good position.
+     *
+     *   @param       board          Board to replay on
+     *   @param       deck           byte [] of 52 to shuffle the deal into
+     *   @return                     number of moves played, fewer than the record holds
+     *                               if one was not legal
+     */
+    public int replay( Board board, byte [] deck )
+    {
+        Deals.fill( deal, deck );
+        board.deal( deck );
+        int n = 0;
+        for( int at = movesAt, end = movesAt + moveBytes; at < end;
+             at += GameRecord.sizeOf( window.get( at ) ) )
+        {
+            int move = GameRecord.getMove( window, at );
+            if( board.check( move ) != Board.LEGAL )
+            {
+                break;
+            }
+            board.move( move );
+            n++;
+        }
+        return n;
+    }
+
+    /*
+     *   @return                     offset in the file just past the current record,
+     *                               which is the end of the archive once next is false
+     */
+    public long end()
+    {
+        return next;
+    }
+
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
@@ -0,0 +1,134 @@
+/************
+ *
+ *    Append only writer of archived FreeCell games.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/*
+ *   GameArchiveWriter adds GameRecords to the end of an archive file and never
+ *   changes what is already there.  Records are gathered in a buffer and written
+ *   when it fills, on flush, and on close, which also force them to disk.  If the
+ *   file ends in a record cut short by a crash, that record is dropped when the
+ *   writer opens, so new records always follow whole ones.
+ */
+public class GameArchiveWriter implements Closeable
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate( BUFFER_SIZE );
+    private long records;
+
+    /*
+     *   Constructor method.  Opens an archive, creating it if it does not exist.
+     *
+     *   @param       file           Path of the archive
+     */
+    public GameArchiveWriter( Path file ) throws IOException
+    {
+        long end = 0;
+        if( Files.exists( file ) )
+        {
+            try( GameArchiveReader reader = new GameArchiveReader( file ) )
+            {
+                try
+                {
+                    while( reader.next() )
+                    {
+                        records++;
+                    }
+                }
+                catch( EOFException e )
+                {
+                    /**
+                     *   The last record was cut short, so it is dropped below.
+                     */
+                }
+                end = reader.end();
+            }
+        }
+        channel = FileChannel.open( file, StandardOpenOption.CREATE,
+                                    StandardOpenOption.WRITE );
+        channel.truncate( end );
+        channel.position( end );
+    }
+
+    /*
+     *   Add a game to the archive.
+     *
+     *   @param       deal           deal number of the game
+     *   @param       moves          int [] of packed moves played, in order
+     *   @param       count          number of moves in the Array to write
+     */
+    public void append( long deal, int [] moves, int count ) throws IOException
+    {
+        int bytes = 0;
+        for( int i = 0; i < count; i++ )
+        {
+            bytes += GameRecord.size( moves[ i ] );
+        }
+        int size = GameRecord.MAX_HEADER + bytes;
+        if( buffer.remaining() < size )
+        {
+            write();
+            if( buffer.capacity() < size )
+            {
+                buffer = ByteBuffer.allocate( size );
+            }
+        }
+        GameRecord.putVarint( deal, buffer );
+        GameRecord.putVarint( bytes, buffer );
+        for( int i = 0; i < count; i++ )
+        {
+            GameRecord.putMove( moves[ i ], buffer );
+        }
+        records++;
+    }
+
+    /*
+     *   @return                     number of records in the archive, written or not
+     */
+    public long records()
+    {
+        return records;
+    }
+
+    /*
+     *   Write every buffered record and force the file to disk.
+     */
+    public void flush() throws IOException
+    {
+        write();
+        channel.force( false );
+    }
+
+    private void write() throws IOException
+    {
+        buffer.flip();
+        while( buffer.hasRemaining() )
+        {
+            channel.write( buffer );
+        }
+        buffer.clear();
+    }
+
+    public void close() throws IOException
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+}
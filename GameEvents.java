@@ -0,0 +1,140 @@
+/************
+ *
+ *    Java Flight Recorder events for FreeCell game, covering clicks, moves, display
+ *    refreshes, win checks, and solver searches.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import jdk.jfr.*;
+
+/**
+ *   GameEvents only holds the event classes, which are named like
+ *   GameEvents.MoveEvent.  Every event is recorded under the FreeCell category of a
+ *   flight recording, so a session can be profiled by starting the game with
+ *   -XX:StartFlightRecording=filename=game.jfr and nothing else.  Until the flight
+ *   recorder starts, no event is made at all, so none of these classes is loaded;
+ *   see Metrics.recording.  Each event that times something also adds the time to a
+ *   Metrics histogram, which is kept whether or not a recording is running.
+ */
+final class GameEvents
+{
+    private GameEvents()
+    {
+    }
+
+    /**
+     *   A click on a Card, placeholder, or button.
+     */
+    @Name( "freecell.Click" )
+    @Label( "Click" )
+    @Category( { "FreeCell", "GUI" } )
+    @Description( "A click on a Card, placeholder, or button, from determineSource " +
+                  "through every check, move, and refresh it caused" )
+    static class ClickEvent extends Event
+    {
+        @Label( "Zone" )
+        int zone;
+
+        @Label( "Index" )
+        int index;
+
+        @Label( "Card Selected" )
+        boolean selected;
+    }
+
+    /**
+     *   The check of a move the player asked for against the rules.
+     */
+    @Name( "freecell.MoveCheck" )
+    @Label( "Move Check" )
+    @Category( { "FreeCell", "GUI" } )
+    static class MoveCheckEvent extends Event
+    {
+        @Label( "Move" )
+        String move;
+
+        @Label( "Result" )
+        int result;
+    }
+
+    /**
+     *   A move played on the board and journaled, before the display is refreshed.
+     */
+    @Name( "freecell.Move" )
+    @Label( "Move" )
+    @Category( { "FreeCell", "GUI" } )
+    static class MoveEvent extends Event
+    {
+        @Label( "Move" )
+        String move;
+
+        @Label( "Automatic" )
+        boolean automatic;
+    }
+
+    /**
+     *   An update of the panels a move changed, with their layout and repaint requests.
+     */
+    @Name( "freecell.Refresh" )
+    @Label( "Display Refresh" )
+    @Category( { "FreeCell", "GUI" } )
+    static class RefreshEvent extends Event
+    {
+        @Label( "Columns Refreshed" )
+        int columns;
+
+        @Label( "Free Cells Refreshed" )
+        boolean freeCells;
+
+        @Label( "Piles Refreshed" )
+        boolean piles;
+    }
+
+    /**
+     *   A check of whether the game is won.
+     */
+    @Name( "freecell.WinCheck" )
+    @Label( "Win Check" )
+    @Category( { "FreeCell", "GUI" } )
+    static class WinCheckEvent extends Event
+    {
+        @Label( "Won" )
+        boolean won;
+    }
+
+    /**
+     *   A whole search by a Solver, with how well its visited table did.  A duplicate is
+     *   a position reached that the table already held, so the hit rate of the table is
+     *   duplicates over generated.
+     */
+    @Name( "freecell.Search" )
+    @Label( "Solver Search" )
+    @Category( { "FreeCell", "Solver" } )
+    static class SearchEvent extends Event
+    {
+        @Label( "Status" )
+        String status;
+
+        @Label( "Nodes Expanded" )
+        long nodes;
+
+        @Label( "Positions Generated" )
+        long generated;
+
+        @Label( "Duplicate Positions" )
+        long duplicates;
+
+        @Label( "Table Entries" )
+        long tableSize;
+
+        @Label( "Largest Queue" )
+        int maxOpen;
+
+        @Label( "Heap Used" )
+        @DataAmount
+        long heapUsed;
+    }
+}
@@ -0,0 +1,171 @@
+/************
+ *
+ *    Binary format for archived FreeCell games: a deal number and the moves played.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.nio.*;
+
+/*
+ *   GameRecord has only static methods.  An archive file is a run of records with
+ *   nothing between them.  A record is the deal number as an unsigned varint (7 bits
+ *   a byte, lowest first, high bit set on every byte but the last), the number of
+ *   bytes of moves as another varint, and then the moves.  A deal number takes 5
+ *   bytes at most, and a game of 100 moves about 110 bytes in all.
+ *
+ *   A move is 1 byte.  Sources are the 8 columns and then the 4 free cells, 12 in all,
+ *   and destinations the 8 columns, 4 free cells, and 4 remove piles, 16 in all, so
+ *   a move of one Card is source * 16 + destination, below MULTIPLE.  A move of a run
+ *   from one column to another is MULTIPLE + from * 8 + to, followed by a second byte
+ *   holding the number of Cards.  Every byte value is used, and a record can be read
+ *   without a Board.
+ *
+ *   The AUTOMATIC bit of a move is not kept; an automatic move is stored like any
+ *   other and replays the same way.
+ */
+public final class GameRecord
+{
+    public static final int MULTIPLE = 192;
+
+    /*
+     *   Longest a record header can be: two varints of at most 5 bytes.
+     */
+    public static final int MAX_HEADER = 10;
+
+    private GameRecord()
+    {
+    }
+
+    /*
+     *   Number of bytes a move takes in a record.
+     *
+     *   @param       move           packed move
+     *   @return                     1, or 2 for a run of Cards
+     */
+    public static int size( int move )
+    {
+        return Moves.count( move ) > 1 ? 2 : 1;
+    }
+
+    /*
+     *   Write the bytes of a move.
+     *
+     *   @param       move           packed move, not from a remove pile
+     *   @param       out            ByteBuffer to write to at its position
+     */
+    public static void putMove( int move, ByteBuffer out )
+    {
+        int count = Moves.count( move );
+        if( count > 1 )
+        {
+            if( Moves.srcZone( move ) != Board.COLUMN ||
+                Moves.destZone( move ) != Board.COLUMN )
+            {
+                throw new IllegalArgumentException( "Only a column can move a run: " +
+                                                    Moves.toString( move ) );
+            }
+            out.put( ( byte ) ( MULTIPLE + Moves.srcIndex( move ) * 8 +
+                                Moves.destIndex( move ) ) );
+            out.put( ( byte ) count );
+            return;
+        }
+        int src = place( Moves.srcZone( move ), Moves.srcIndex( move ), false );
+        int dest = place( Moves.destZone( move ), Moves.destIndex( move ), true );
+        out.put( ( byte ) ( src * 16 + dest ) );
+    }
+
+    /*
+     *   Number a place as a source 0 to 11 or a destination 0 to 15.
+     */
+    private static int place( int zone, int index, boolean destination )
+    {
+        if( zone == Board.COLUMN )
+        {
+            return index;
+        }
+        if( zone == Board.FREE_CELL )
+        {
+            return Board.COLUMNS + index;
+        }
+        if( ! destination )
+        {
+            throw new IllegalArgumentException( "A game never moves a Card off a pile" );
+        }
+        return Board.COLUMNS + Board.CELLS + index;
+    }
+
+    /*
+     *   Read a move back as a packed int.
+     *
+     *   @param       in             ByteBuffer holding the move
+     *   @param       at             index of the move's first byte
+     *   @return                     packed move
+     */
+    public static int getMove( ByteBuffer in, int at )
+    {
+        int b = in.get( at ) & 0xFF;
+        if( b >= MULTIPLE )
+        {
+            b -= MULTIPLE;
+            return Moves.pack( Board.COLUMN, b >>> 3, in.get( at + 1 ) & 0xFF,
+                               Board.COLUMN, b & 7 );
+        }
+        int src = b >>> 4;
+        int dest = b & 15;
+        int srcZone = src < Board.COLUMNS ? Board.COLUMN : Board.FREE_CELL;
+        int destZone = dest < Board.COLUMNS ? Board.COLUMN :
+                       dest < Board.COLUMNS + Board.CELLS ? Board.FREE_CELL :
+                       Board.REMOVE_PILE;
+        int destIndex = destZone == Board.REMOVE_PILE ?
+                        dest - Board.COLUMNS - Board.CELLS : dest % Board.COLUMNS;
+        return Moves.pack( srcZone, src % Board.COLUMNS, 1, destZone, destIndex );
+    }
+
+    /*
+     *   Number of bytes the move starting with a given byte takes.
+     */
+    public static int sizeOf( byte first )
+    {
+        return ( first & 0xFF ) >= MULTIPLE ? 2 : 1;
+    }
+
+    /*
+     *   Write an unsigned varint.
+     */
+    public static void putVarint( long value, ByteBuffer out )
+    {
+        while( ( value & ~0x7FL ) != 0 )
+        {
+            out.put( ( byte ) ( value & 0x7F | 0x80 ) );
+            value >>>= 7;
+        }
+        out.put( ( byte ) value );
+    }
+
+    /*
+     *   Read an unsigned varint at an index of a buffer, without moving its position.
+     *
+     *   @param       in             ByteBuffer holding the varint
+     *   @param       at             index of its first byte
+     *   @param       end            index past the last byte that may be read
+     *   @return                     long value in the low 56 bits, and its length in
+     *                               bytes in the high 8 bits, or -1 if it runs past end
+     */
+    public static long getVarint( ByteBuffer in, int at, int end )
+    {
+        long value = 0;
+        for( int shift = 0, i = at; i < end && shift < 56; shift += 7, i++ )
+        {
+            byte b = in.get( i );
+            value |= ( long ) ( b & 0x7F ) << shift;
+            if( b >= 0 )
+            {
+                return value | ( long ) ( i - at + 1 ) << 56;
+            }
+        }
+        return -1;
+    }
+}
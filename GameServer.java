@@ -0,0 +1,618 @@
+/************
+ *
+ *    HTTP server for FreeCell game.  Hosts many games at once, one session for each
+ *    player, played through a small JSON API instead of a window.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/*
+ *   GameServer uses only the model classes, like CommandLine, so it runs with no
+ *   display.  A session in use is the deal number, a Board, and a count of moves; no
+ *   Card, button, or list is kept for it.  Each move is checked with Board.check, the
+ *   same rules FreeCell's source methods apply to a click, and played along with any
+ *   auto-play.
+ *
+ *   A session with no request for idleMillis is parked: the map holds a snapshot of
+ *   at most SNAPSHOT_SIZE bytes in its place, the position in Board.packCompact form
+ *   followed by the deal number and the count of moves as varints.  The next request
+ *   for it hydrates a Board from the snapshot, which takes the same time however long
+ *   the game has run.  A parked game costs under 150 bytes with its map entry, a
+ *   small part of one in use, so a server can hold millions of them.
+ *
+ *   Each request runs on a virtual thread when the Java runtime has them, and on a
+ *   cached pool of threads otherwise.  Requests for one session are taken in turn by
+ *   locking the session.  The lock is only held while the Board is read or changed,
+ *   never while waiting on the network, so holding it on a virtual thread costs
+ *   nothing.  Parking also takes the lock, and marks the Session so a request that
+ *   was waiting for it hydrates the game again.
+ *
+ *   Places are named the way Moves.toString names them, without the space: col0 to
+ *   col7, cell0 to cell3, and pile0 to pile3.  Parameters go in the query string.
+ *
+ *       POST   /games?deal=N                          start a game, a random deal if
+ *                                                     no number is given
+ *       GET    /games                                 numbers of games in use and
+ *                                                     parked
+ *       GET    /games/ID                              the position of a game
+ *       POST   /games/ID/move?from=col3&to=cell0      move the top Card of a column
+ *                     [&count=N] [&auto=false]        or N Cards, and auto-play
+ *                                                     unless auto is false
+ *       DELETE /games/ID                              end a game
+ *
+ *   A move the rules do not allow is answered normally, with legal false and the
+ *   same message the window would show.  Bad parameters get status 400 and an
+ *   unknown game 404.
+ */
+public class GameServer
+{
+    public static final int DEFAULT_PORT = 8080;
+    public static final long DEFAULT_IDLE_MILLIS = 60000;
+
+    /*
+     *   Longest a snapshot can be: the compact position, a deal number of at most 5
+     *   bytes as a varint, and a count of moves of at most 5.
+     */
+    public static final int SNAPSHOT_SIZE = Board.COMPACT_SIZE + 10;
+
+    private static final int BACKLOG = 1024;
+    private static final String [] ZONES = { "col", "cell", "pile" };
+    private static final int [] ZONE_SIZES = { Board.COLUMNS, Board.CELLS, Board.PILES };
+    private static final String [] MESSAGES = { null, "Not a legal move.",
+                                                "Not enough free cells." };
+
+    private final HttpServer http;
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final ScheduledExecutorService parker;
+    private final long idleNanos;
+
+    /*
+     *   Each value is a Session while the game is in use and a byte [] snapshot while
+     *   it is parked.
+     */
+    private final ConcurrentHashMap< Long, Object > sessions =
+        new ConcurrentHashMap< Long, Object >();
+    private final AtomicLong nextId = new AtomicLong();
+
+    /*
+     *   One game in use.  Every field but the id and deal is only read or written
+     *   while holding the Session's lock.
+     */
+    private static final class Session
+    {
+        final long id;
+        final long deal;
+        final Board board = new Board();
+        int moves;
+        long lastUsed = System.nanoTime();
+        boolean parked;
+
+        Session( long id, long deal )
+        {
+            this.id = id;
+            this.deal = deal;
+        }
+    }
+
+    /*
+     *   Constructor method.  The server does not answer until started.
+     *
+     *   @param       port           port to listen on, or 0 for any free port
+     */
+    public GameServer( int port ) throws IOException
+    {
+        this( port, DEFAULT_IDLE_MILLIS );
+    }
+
+    /*
+     *   Constructor method.
+     *
+     *   @param       port           port to listen on, or 0 for any free port
+     *   @param       idleMillis     time with no request after which a game is parked
+     */
+    public GameServer( int port, long idleMillis ) throws IOException
+    {
+        idleNanos = idleMillis * 1000000;
+        parker = Executors.newSingleThreadScheduledExecutor( task ->
+        {
+            Thread t = new Thread( task, "FreeCell parker" );
+            t.setDaemon( true );
+            return t;
+        } );
+        long period = Math.max( idleMillis / 2, 100 );
+        parker.scheduleWithFixedDelay( this::parkIdle, period, period,
+                                       TimeUnit.MILLISECONDS );
+        ExecutorService perTask = VirtualThreads.perTaskExecutor();
+        virtual = perTask != null;
+        executor = virtual ? perTask : Executors.newCachedThreadPool();
+        http = HttpServer.create( new InetSocketAddress( port ), BACKLOG );
+        http.createContext( "/games", this::handle );
+        http.setExecutor( executor );
+    }
+
+    public void start()
+    {
+        http.start();
+    }
+
+    /*
+     *   Stop answering, and end every session.
+     */
+    public void stop()
+    {
+        http.stop( 0 );
+        parker.shutdownNow();
+        executor.shutdownNow();
+        sessions.clear();
+    }
+
+    /*
+     *   @return                     integer port the server listens on
+     */
+    public int getPort()
+    {
+        return http.getAddress().getPort();
+    }
+
+    /*
+     *   @return                     boolean, true if requests run on virtual threads
+     */
+    public boolean onVirtualThreads()
+    {
+        return virtual;
+    }
+
+    /*
+     *   @return                     number of games being played, in use or parked
+     */
+    public int sessionCount()
+    {
+        return sessions.size();
+    }
+
+    /*
+     *   @return                     number of games parked
+     */
+    public int parkedCount()
+    {
+        int n = 0;
+        for( Object o : sessions.values() )
+        {
+            if( o instanceof byte [] )
+            {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /*
+     *   Park every game that has had no request for idleMillis.  Runs on the parker
+     *   thread.
+     *
+     *   @return                     number of games parked
+     */
+    public int parkIdle()
+    {
+        long now = System.nanoTime();
+        int n = 0;
+        for( Object o : sessions.values() )
+        {
+            if( o instanceof Session )
+            {
+                Session session = ( Session ) o;
+                synchronized( session )
+                {
+                    if( ! session.parked && now - session.lastUsed >= idleNanos &&
+                        sessions.replace( session.id, session, snapshot( session ) ) )
+                    {
+                        session.parked = true;
+                        n++;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    /*
+     *   Write the snapshot of a game.
+     *
+     *   @param       session        Session of the game
+     *   @return                     byte [] of at most SNAPSHOT_SIZE bytes
+     */
+    private static byte [] snapshot( Session session )
+    {
+        ByteBuffer out = ByteBuffer.allocate( SNAPSHOT_SIZE );
+        session.board.packCompact( out.array(), 0 );
+        out.position( Board.COMPACT_SIZE );
+        GameRecord.putVarint( session.deal, out );
+        GameRecord.putVarint( session.moves, out );
+        return Arrays.copyOf( out.array(), out.position() );
+    }
+
+    /*
+     *   Restore a game from its snapshot.
+     *
+     *   @param       id             id of the game
+     *   @param       snapshot       byte [] written by snapshot
+     *   @return                     Session in use
+     */
+    private static Session hydrate( long id, byte [] snapshot )
+    {
+        ByteBuffer in = ByteBuffer.wrap( snapshot );
+        long deal = GameRecord.getVarint( in, Board.COMPACT_SIZE, snapshot.length );
+        int at = Board.COMPACT_SIZE + ( int ) ( deal >>> 56 );
+        Session session = new Session( id, deal & 0xFFFFFFFFFFFFFFL );
+        session.moves = ( int ) GameRecord.getVarint( in, at, snapshot.length );
+        session.board.unpackCompact( snapshot, 0 );
+        return session;
+    }
+
+    /*
+     *   Run an action on a game in use, hydrating it first if it is parked.
+     *
+     *   @param       id             id of the game
+     *   @param       action         Function of the Session, run holding its lock
+     *   @return                     String the action returns, or null if there is no
+     *                               such game
+     */
+    private String withSession( long id, Function< Session, String > action )
+    {
+        while( true )
+        {
+            Object o = sessions.computeIfPresent( id, ( key, value ) ->
+                value instanceof byte [] ? hydrate( key, ( byte [] ) value ) : value );
+            if( o == null )
+            {
+                return null;
+            }
+            Session session = ( Session ) o;
+            synchronized( session )
+            {
+                if( ! session.parked )
+                {
+                    session.lastUsed = System.nanoTime();
+                    return action.apply( session );
+                }
+            }
+        }
+    }
+
+    /*
+     *   Name of a place on the board, as used in requests.
+     *
+     *   @param       zone           Board.COLUMN, Board.FREE_CELL, or Board.REMOVE_PILE
+     *   @param       index          integer index in the zone
+     *   @return                     String such as "col3"
+     */
+    public static String place( int zone, int index )
+    {
+        return ZONES[ zone ] + index;
+    }
+
+    /*
+     *   Read the name of a place.
+     *
+     *   @param       name           String such as "col3"
+     *   @return                     integer zone in the low 2 bits, index above them
+     */
+    private static int parsePlace( String name )
+    {
+        for( int zone = 0; zone < ZONES.length && name != null; zone++ )
+        {
+            if( name.startsWith( ZONES[ zone ] ) )
+            {
+                int index = Integer.parseInt( name.substring( ZONES[ zone ].length() ) );
+                if( index < 0 || index >= ZONE_SIZES[ zone ] )
+                {
+                    break;
+                }
+                return zone | index << 2;
+            }
+        }
+        throw new IllegalArgumentException( "Not a place: " + name );
+    }
+
+    /*
+     *   Answer one request.  Runs on its own thread.
+     *
+     *   @param       exchange       HttpExchange of the request
+     */
+    private void handle( HttpExchange exchange ) throws IOException
+    {
+        long began = System.nanoTime();
+        try
+        {
+            String method = exchange.getRequestMethod();
+            URI uri = exchange.getRequestURI();
+            String [] path = uri.getPath().substring( 1 ).split( "/" );
+            Map< String, String > params = query( uri.getRawQuery() );
+            if( ! path[ 0 ].equals( "games" ) )
+            {
+                respond( exchange, 404, "{\"error\":\"No such request.\"}" );
+                return;
+            }
+            if( path.length == 1 && method.equals( "POST" ) )
+            {
+                String deal = params.get( "deal" );
+                respond( exchange, 201, create( deal != null ? Long.parseLong( deal ) :
+                                                Deals.randomDeal() ) );
+                return;
+            }
+            if( path.length == 1 && method.equals( "GET" ) )
+            {
+                int parked = parkedCount();
+                respond( exchange, 200, "{\"inUse\":" + ( sessionCount() - parked ) +
+                                        ",\"parked\":" + parked + "}" );
+                return;
+            }
+            long id = path.length > 1 ? Long.parseLong( path[ 1 ] ) : -1;
+            String json = null;
+            if( path.length == 2 && method.equals( "GET" ) )
+            {
+                json = withSession( id, session ->
+                    state( session, new StringBuilder( 512 ).append( '{' ) ).toString() );
+            }
+            else if( path.length == 2 && method.equals( "DELETE" ) )
+            {
+                json = sessions.remove( id ) != null ? "{\"id\":" + id + "}" : null;
+            }
+            else if( path.length == 3 && path[ 2 ].equals( "move" ) &&
+                     method.equals( "POST" ) )
+            {
+                String count = params.get( "count" );
+                int move = move( parsePlace( params.get( "from" ) ),
+                                 parsePlace( params.get( "to" ) ),
+                                 count != null ? Integer.parseInt( count ) : 1 );
+                boolean auto = ! "false".equals( params.get( "auto" ) );
+                json = withSession( id, session -> play( session, move, auto ) );
+            }
+            else
+            {
+                respond( exchange, 404, "{\"error\":\"No such request.\"}" );
+                return;
+            }
+            if( json != null )
+            {
+                respond( exchange, 200, json );
+            }
+            else
+            {
+                respond( exchange, 404, "{\"error\":\"No such game.\"}" );
+            }
+        }
+        catch( IllegalArgumentException e )
+        {
+            respond( exchange, 400, "{\"error\":" + quote( e.getMessage() ) + "}" );
+        }
+        finally
+        {
+            exchange.close();
+            Metrics.REQUEST.record( System.nanoTime() - began );
+        }
+    }
+
+    /*
+     *   Start a session on a numbered deal.
+     *
+     *   @param       deal           deal number
+     *   @return                     String JSON of the new game
+     */
+    private String create( long deal )
+    {
+        if( ! Deals.isValid( deal ) )
+        {
+            throw new IllegalArgumentException( "Not a deal number." );
+        }
+        byte [] deck = new byte [ Board.DECK_SIZE ];
+        Deals.fill( deal, deck );
+        Session session = new Session( nextId.incrementAndGet(), deal );
+        synchronized( session )
+        {
+            session.board.deal( deck );
+            sessions.put( session.id, session );
+            return state( session, new StringBuilder( 512 ).append( '{' ) ).toString();
+        }
+    }
+
+    /*
+     *   Pack a move from the places in a request.
+     *
+     *   @param       from           place the Cards move from, as parsePlace gives
+     *   @param       to             place the Cards move to
+     *   @param       count          number of Cards moving
+     *   @return                     packed move
+     */
+    private static int move( int from, int to, int count )
+    {
+        if( count < 1 || count > Board.MAX_COLUMN )
+        {
+            throw new IllegalArgumentException( "Not a number of Cards: " + count );
+        }
+        return Moves.pack( from & 3, from >>> 2, count, to & 3, to >>> 2 );
+    }
+
+    /*
+     *   Check a move in a game and play it if the rules allow, followed by every Card
+     *   auto-play then removes.  Called holding the Session's lock.
+     *
+     *   @param       session        Session of the game
+     *   @param       move           packed move
+     *   @param       auto           boolean, true to auto-play after the move
+     *   @return                     String JSON of the result and the position after
+     */
+    private static String play( Session session, int move, boolean auto )
+    {
+        Board board = session.board;
+        int [] played = new int [ Board.DECK_SIZE + 1 ];
+        int result = board.check( move );
+        int n = 0;
+        if( result == Board.LEGAL )
+        {
+            board.move( move );
+            played[ n++ ] = move;
+            if( auto )
+            {
+                n = Solver.autoPlay( board, played, n );
+            }
+            session.moves += n;
+        }
+        StringBuilder json = new StringBuilder( 512 );
+        json.append( "{\"legal\":" ).append( result == Board.LEGAL );
+        if( result != Board.LEGAL )
+        {
+            json.append( ",\"message\":" ).append( quote( MESSAGES[ result ] ) );
+        }
+        json.append( ",\"played\":[" );
+        for( int i = 0; i < n; i++ )
+        {
+            json.append( i > 0 ? "," : "" )
+                .append( quote( Moves.toString( played[ i ] ) ) );
+        }
+        json.append( "]," );
+        return state( session, json ).toString();
+    }
+
+    /*
+     *   Add the fields of a game to a JSON object being written: its id, deal, count
+     *   of moves, whether it is won, and the Cards in every column from the first row
+     *   down, every free cell, and the top of every remove pile.  Closes the object,
+     *   which the caller has opened.  Called holding the Session's lock.
+     *
+     *   @param       session        Session of the game
+     *   @param       json           StringBuilder the object is being written to
+     *   @return                     the same StringBuilder
+     */
+    private static StringBuilder state( Session session, StringBuilder json )
+    {
+        Board board = session.board;
+        json.append( "\"id\":" ).append( session.id )
+            .append( ",\"deal\":" ).append( session.deal )
+            .append( ",\"moves\":" ).append( session.moves )
+            .append( ",\"won\":" ).append( board.isWon() )
+            .append( ",\"columns\":[" );
+        for( int col = 0; col < Board.COLUMNS; col++ )
+        {
+            json.append( col > 0 ? ",[" : "[" );
+            for( int row = 0; row < board.columnLength( col ); row++ )
+            {
+                json.append( row > 0 ? "," : "" )
+                    .append( card( board.cardAt( col, row ) ) );
+            }
+            json.append( ']' );
+        }
+        json.append( "],\"cells\":[" );
+        for( int i = 0; i < Board.CELLS; i++ )
+        {
+            json.append( i > 0 ? "," : "" ).append( card( board.freeCell( i ) ) );
+        }
+        json.append( "],\"piles\":[" );
+        for( int i = 0; i < Board.PILES; i++ )
+        {
+            json.append( i > 0 ? "," : "" ).append( card( board.removePile( i ) ) );
+        }
+        return json.append( "]}" );
+    }
+
+    private static String card( byte code )
+    {
+        return code == Board.EMPTY ? "null" : quote( Cards.name( code ) );
+    }
+
+    /*
+     *   JSON string for a message.  Card names and messages never hold a quote or a
+     *   backslash, but an error message may echo a parameter, which could.
+     */
+    private static String quote( String s )
+    {
+        String escaped = String.valueOf( s ).replace( "\\", "\\\\" )
+                                            .replace( "\"", "\\\"" );
+        return "\"" + escaped + "\"";
+    }
+
+    /*
+     *   Split a raw query string into its decoded parameters.
+     */
+    private static Map< String, String > query( String raw )
+    {
+        Map< String, String > params = new HashMap< String, String >();
+        if( raw == null )
+        {
+            return params;
+        }
+        for( String pair : raw.split( "&" ) )
+        {
+            int eq = pair.indexOf( '=' );
+            if( eq > 0 )
+            {
+                String name = pair.substring( 0, eq );
+                String value = pair.substring( eq + 1 );
+                params.put( URLDecoder.decode( name, StandardCharsets.UTF_8 ),
+                            URLDecoder.decode( value, StandardCharsets.UTF_8 ) );
+            }
+        }
+        return params;
+    }
+
+    private static void respond( HttpExchange exchange, int status, String json )
+        throws IOException
+    {
+        byte [] body = json.getBytes( StandardCharsets.UTF_8 );
+        exchange.getResponseHeaders().set( "Content-Type",
+                                           "application/json; charset=utf-8" );
+        exchange.sendResponseHeaders( status, body.length );
+        try( OutputStream out = exchange.getResponseBody() )
+        {
+            out.write( body );
+        }
+    }
+
+    public static void main( String [] args ) throws IOException
+    {
+        /**
+         *   The JDK's server closes any connection that goes idle while 200 others
+         *   are idle, and a client that had already reused it sees it closed under
+         *   its request.  Every player keeps a connection open between moves, so the
+         *   limit is raised unless one was set on the command line.  The server reads
+         *   it when its first instance starts, so it is set before that.
+         */
+        if( System.getProperty( "sun.net.httpserver.maxIdleConnections" ) == null )
+        {
+            System.setProperty( "sun.net.httpserver.maxIdleConnections", "1000000" );
+        }
+
+        /**
+         *   -Dfreecell.idleMillis=N parks a game after N milliseconds with no request.
+         */
+        int port = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : DEFAULT_PORT;
+        GameServer server = new GameServer( port, Long.getLong( "freecell.idleMillis",
+                                                                DEFAULT_IDLE_MILLIS ) );
+        /**
+         *   -Dfreecell.metrics=true prints the request latencies when the server
+         *   ends, as it does for the game.
+         */
+        if( Boolean.getBoolean( "freecell.metrics" ) )
+        {
+            Runtime.getRuntime().addShutdownHook( new Thread( () ->
+                Metrics.report( System.err ) ) );
+        }
+        server.start();
+        System.err.println( "FreeCell server on port " + server.getPort() +
+                            ", requests on " + ( server.onVirtualThreads() ?
+                                                 "virtual threads" : "a thread pool" ) );
+    }
+}
@@ -0,0 +1,243 @@
+/************
+ *
+ *    Background hint engine for FreeCell game.  Keeps a Solver working on the
+ *    position being played so a hint is ready when the player asks for one.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.util.concurrent.*;
+import javax.swing.*;
+
+/*
+ *   HintEngine is used from the Swing event thread only, and never blocks it.  Each
+ *   time the position changes the GUI calls positionChanged, which cancels any search
+ *   still running for an older position and starts one for the new position on
+ *   another thread.  A search that finishes hands its Solution back to the event
+ *   thread, where it is kept only if the position has not changed since.
+ *
+ *   The winning line of the last Solution is cached together with the hash of the
+ *   position before each of its moves.  While the player follows the line, or undoes
+ *   back onto it, every position is already in the cache, no new search is started,
+ *   and hint answers at once.
+ *
+ *   Searches run on virtual threads when the Java runtime has them, which costs
+ *   nothing to start or cancel.  Otherwise a single daemon thread runs them in turn.
+ *   A search is cancelled by interrupting its thread, which the Solver checks for.
+ *   A search that fails hands back no Solution, and the position is then treated as
+ *   one the Solver could not win.  While the engine is off no search is started and
+ *   no position has a hint.
+ */
+public class HintEngine
+{
+    /*
+     *   States of the hint for the current position.
+     */
+    public static final int SEARCHING = 0;
+    public static final int READY = 1;
+    public static final int NO_HINT = 2;
+
+    private final ExecutorService executor = newExecutor();
+    private final long nodeBudget;
+    private final long timeBudgetMillis;
+    private Runnable listener;
+    private boolean enabled = true;
+
+    private long position;
+    private Future< ? > search;
+    private int [] line = new int [ 0 ];
+    private long [] lineHashes = new long [ 0 ];
+    private long unsolved;
+
+    /*
+     *   Constructor method.
+     *
+     *   @param       nodeBudget         node budget of each search
+     *   @param       timeBudgetMillis   time budget of each search
+     */
+    public HintEngine( long nodeBudget, long timeBudgetMillis )
+    {
+        this.nodeBudget = nodeBudget;
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    /*
+     *   Make an executor that starts a virtual thread for each search, if the runtime
+     *   has virtual threads, or else one that runs them on a daemon thread.
+     */
+    private static ExecutorService newExecutor()
+    {
+        ExecutorService virtual = VirtualThreads.perTaskExecutor();
+        if( virtual != null )
+        {
+            return virtual;
+        }
+        return Executors.newSingleThreadExecutor( task ->
+        {
+            Thread t = new Thread( task, "FreeCell hints" );
+            t.setDaemon( true );
+            return t;
+        } );
+    }
+
+    /*
+     *   Basic setter.  The listener is run on the event thread whenever a search for
+     *   the current position finishes.
+     *
+     *   @param       onReady        Runnable to run, or null for none
+     */
+    public void setListener( Runnable onReady )
+    {
+        listener = onReady;
+    }
+
+    /*
+     *   Basic setter.  Turning the engine off cancels any search that is running.
+     *   Call positionChanged after turning it back on to search the position.
+     *
+     *   @param       on             boolean, false to stop searching
+     */
+    public void setEnabled( boolean on )
+    {
+        enabled = on;
+        if( ! on && search != null )
+        {
+            search.cancel( true );
+            search = null;
+        }
+    }
+
+    /*
+     *   @return                     boolean, true unless the engine has been turned off
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /*
+     *   Tell the engine the position has changed.  Starts a search unless the engine
+     *   is off or the cached line already covers the position.
+     *
+     *   @param       board          Board in the new position, not kept
+     */
+    public void positionChanged( Board board )
+    {
+        position = board.hash();
+        if( search != null )
+        {
+            search.cancel( true );
+            search = null;
+        }
+        if( ! enabled || indexInLine() >= 0 || position == unsolved )
+        {
+            return;
+        }
+        Board copy = new Board( board );
+        long key = position;
+        search = executor.submit( () ->
+        {
+            Solution s;
+            try
+            {
+                s = new Solver( nodeBudget, timeBudgetMillis ).solve( copy );
+            }
+            catch( RuntimeException | StackOverflowError | OutOfMemoryError e )
+            {
+                s = null;
+            }
+            Solution result = s;
+            if( ! Thread.currentThread().isInterrupted() )
+            {
+                SwingUtilities.invokeLater( () -> finished( key, copy, result ) );
+            }
+        } );
+    }
+
+    /*
+     *   Keep the result of a search if it is for the current position.  Runs on the
+     *   event thread.
+     *
+     *   @param       s              Solution, or null if the search failed
+     */
+    private void finished( long key, Board start, Solution s )
+    {
+        if( key != position )
+        {
+            return;
+        }
+        search = null;
+        if( s != null && s.isSolved() )
+        {
+            line = s.getMoves();
+            lineHashes = new long [ line.length ];
+            for( int i = 0; i < line.length; i++ )
+            {
+                lineHashes[ i ] = start.hash();
+                start.move( line[ i ] );
+            }
+        }
+        else
+        {
+            unsolved = key;
+        }
+        if( listener != null )
+        {
+            listener.run();
+        }
+    }
+
+    /*
+     *   Find the current position in the cached line.
+     *
+     *   @return                     integer index of the move to play next, or -1
+     */
+    private int indexInLine()
+    {
+        for( int i = 0; i < lineHashes.length; i++ )
+        {
+            if( lineHashes[ i ] == position )
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     *   @return                     SEARCHING, READY, or NO_HINT for the position
+     */
+    public int status()
+    {
+        if( ! enabled )
+        {
+            return NO_HINT;
+        }
+        if( indexInLine() >= 0 )
+        {
+            return READY;
+        }
+        return position == unsolved ? NO_HINT : SEARCHING;
+    }
+
+    /*
+     *   The best next move from the current position.  Never waits for a search.
+     *
+     *   @return                     packed move, or -1 if status is not READY
+     */
+    public int hint()
+    {
+        int i = enabled ? indexInLine() : -1;
+        return i < 0 ? -1 : line[ i ];
+    }
+
+    /*
+     *   Stop any search and the thread that runs them.
+     */
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+}
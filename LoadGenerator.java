@@ -0,0 +1,243 @@
+/************
+ *
+ *    Load generator for the FreeCell game server.  Plays many games at once against
+ *    a running GameServer and reports how long its moves take.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.io.*;
+import java.net.*;
+import java.net.http.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.regex.*;
+
+/*
+ *   Each simulated player starts a game, plays the Solver's winning line for its deal
+ *   one move a request, checks the game is won, and ends it.  Every player starts at
+ *   once and none waits between moves, so the server is kept as busy as the players
+ *   can make it.  The lines are found before any request is sent, for a small set of
+ *   deals the players share, so the Solver does not compete with the server.
+ *
+ *   The moves are sent with auto=false because the Solver's line already holds the
+ *   Cards auto-play removes.  Every move's round trip is timed, and the report gives
+ *   the exact percentiles of all of them, not the bucketed estimates of Metrics.
+ *
+ *   Usage:
+ *       java LoadGenerator [players] [serverUrl]
+ *
+ *   The defaults are 1000 players and http://localhost:8080.  The exit status is 1 if
+ *   any request failed or any game was not won.
+ */
+public class LoadGenerator
+{
+    public static final int DEFAULT_PLAYERS = 1000;
+    public static final String DEFAULT_URL =
+        "http://localhost:" + GameServer.DEFAULT_PORT;
+
+    private static final int DEALS = 100;
+    private static final Pattern ID = Pattern.compile( "\"id\":(\\d+)" );
+
+    private final String url;
+    private final HttpClient client;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger won = new AtomicInteger();
+
+    /*
+     *   Constructor method.
+     *
+     *   @param       url            base URL of the server
+     */
+    public LoadGenerator( String url )
+    {
+        this.url = url;
+        client = HttpClient.newBuilder().version( HttpClient.Version.HTTP_1_1 ).build();
+    }
+
+    /*
+     *   Send a request and return the body of the answer, or null if it failed.
+     */
+    private String send( String method, String path )
+    {
+        try
+        {
+            HttpRequest request =
+                HttpRequest.newBuilder( URI.create( url + path ) )
+                           .method( method, HttpRequest.BodyPublishers.noBody() )
+                           .build();
+            HttpResponse< String > response =
+                client.send( request, HttpResponse.BodyHandlers.ofString() );
+            if( response.statusCode() / 100 == 2 )
+            {
+                return response.body();
+            }
+            System.err.println( method + " " + path + ": " + response.statusCode() + " " +
+                                response.body() );
+        }
+        catch( IOException e )
+        {
+            System.err.println( method + " " + path + ": " + e );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        failures.incrementAndGet();
+        return null;
+    }
+
+    /*
+     *   Play one game from start to end.
+     *
+     *   @param       deal           deal number
+     *   @param       line           int [] of packed moves that win the deal
+     *   @return                     long [] round trip time of each move in nanoseconds,
+     *                               as many as were played
+     */
+    private long [] play( long deal, int [] line )
+    {
+        long [] times = new long [ line.length ];
+        String body = send( "POST", "/games?deal=" + deal );
+        Matcher m = body == null ? null : ID.matcher( body );
+        if( m == null || ! m.find() )
+        {
+            return new long [ 0 ];
+        }
+        String game = "/games/" + m.group( 1 );
+        for( int i = 0; i < line.length; i++ )
+        {
+            int move = line[ i ];
+            String from =
+                GameServer.place( Moves.srcZone( move ), Moves.srcIndex( move ) );
+            String to =
+                GameServer.place( Moves.destZone( move ), Moves.destIndex( move ) );
+            String path = game + "/move?from=" + from + "&to=" + to + "&count=" +
+                          Moves.count( move ) + "&auto=false";
+            long began = System.nanoTime();
+            body = send( "POST", path );
+            times[ i ] = System.nanoTime() - began;
+            if( body == null )
+            {
+                /**
+                 *   send has counted the failed request already.
+                 */
+                return Arrays.copyOf( times, i + 1 );
+            }
+            if( ! body.startsWith( "{\"legal\":true" ) )
+            {
+                failures.incrementAndGet();
+                return Arrays.copyOf( times, i + 1 );
+            }
+        }
+        if( body.contains( "\"won\":true" ) )
+        {
+            won.incrementAndGet();
+        }
+        send( "DELETE", game );
+        return times;
+    }
+
+    /*
+     *   Find a winning line for each of the first DEALS deals the Solver can win.
+     */
+    private static Map< Long, int [] > lines( int wanted )
+    {
+        Map< Long, int [] > lines = new LinkedHashMap< Long, int [] >();
+        byte [] deck = new byte [ Board.DECK_SIZE ];
+        Board board = new Board();
+        for( long deal = Deals.MIN_DEAL; lines.size() < wanted; deal++ )
+        {
+            Deals.fill( deal, deck );
+            board.deal( deck );
+            Solution s = new Solver().solve( board );
+            if( s.isSolved() )
+            {
+                lines.put( deal, s.getMoves() );
+            }
+        }
+        return lines;
+    }
+
+    /*
+     *   Run the players and print the report.
+     *
+     *   @param       players        number of games to play at once
+     *   @param       out            PrintStream for the report
+     *   @return                     exit status
+     */
+    public int run( int players, PrintStream out ) throws Exception
+    {
+        long began = System.nanoTime();
+        Map< Long, int [] > lines = lines( Math.min( players, DEALS ) );
+        Long [] deals = lines.keySet().toArray( new Long [ 0 ] );
+        out.printf( "found lines for %d deals in %.2f s%n", deals.length,
+                    ( System.nanoTime() - began ) / 1e9 );
+
+        ExecutorService perTask = VirtualThreads.perTaskExecutor();
+        ExecutorService executor =
+            perTask != null ? perTask : Executors.newCachedThreadPool();
+        List< Future< long [] > > games = new ArrayList< Future< long [] > >();
+        CountDownLatch start = new CountDownLatch( 1 );
+        for( int p = 0; p < players; p++ )
+        {
+            long deal = deals[ p % deals.length ];
+            games.add( executor.submit( () ->
+            {
+                start.await();
+                return play( deal, lines.get( deal ) );
+            } ) );
+        }
+        began = System.nanoTime();
+        start.countDown();
+        long [] all = new long [ 0 ];
+        int n = 0;
+        for( Future< long [] > game : games )
+        {
+            long [] times = game.get();
+            if( all.length < n + times.length )
+            {
+                all = Arrays.copyOf( all, Math.max( all.length * 2, n + times.length ) );
+            }
+            System.arraycopy( times, 0, all, n, times.length );
+            n += times.length;
+        }
+        double seconds = ( System.nanoTime() - began ) / 1e9;
+        executor.shutdown();
+
+        Arrays.sort( all, 0, n );
+        out.printf( "%d players on %s, %d won, %d failures%n", players,
+                    perTask != null ? "virtual threads" : "platform threads", won.get(),
+                    failures.get() );
+        out.printf( "%d moves in %.2f s, %.0f moves/s%n", n, seconds, n / seconds );
+        if( n > 0 )
+        {
+            out.printf( "move latency   p50 %.2f ms   p90 %.2f ms   p99 %.2f ms   " +
+                        "p99.9 %.2f ms   max %.2f ms%n", percentile( all, n, 50 ),
+                        percentile( all, n, 90 ), percentile( all, n, 99 ),
+                        percentile( all, n, 99.9 ), all[ n - 1 ] / 1e6 );
+        }
+        return failures.get() == 0 && won.get() == players ? 0 : 1;
+    }
+
+    /*
+     *   Nearest rank percentile of sorted times.
+     *
+     *   @return                     double, time in milliseconds
+     */
+    private static double percentile( long [] sorted, int n, double p )
+    {
+        int rank = ( int ) Math.ceil( n * p / 100 );
+        return sorted[ Math.max( rank, 1 ) - 1 ] / 1e6;
+    }
+
+    public static void main( String [] args ) throws Exception
+    {
+        int players = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : DEFAULT_PLAYERS;
+        String url = args.length > 1 ? args[ 1 ] : DEFAULT_URL;
+        System.exit( new LoadGenerator( url ).run( players, System.out ) );
+    }
+}
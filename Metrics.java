@@ -0,0 +1,154 @@
+/************
+ *
+ *    Counters and latency histograms for FreeCell game, cheap enough to leave on in
+ *    every session.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.io.*;
+import java.util.concurrent.atomic.*;
+import jdk.jfr.*;
+
+/*
+ *   Metrics has only static members.  Each Histogram counts durations in buckets by
+ *   powers of 2 of nanoseconds, so recording one is an add to one of 64 counters and
+ *   needs no lock, from any thread.  Percentiles read from the buckets are accurate to
+ *   within a factor of 2, which is enough to tell a 50 microsecond refresh from a
+ *   5 millisecond one.  Counters are LongAdders, for the Solver threads.
+ *
+ *   Start the game with -Dfreecell.metrics=true to have the report printed to the
+ *   error stream when it ends.
+ */
+public final class Metrics
+{
+    public static final Histogram CLICK = new Histogram( "click" );
+    public static final Histogram MOVE_CHECK = new Histogram( "move check" );
+    public static final Histogram MOVE = new Histogram( "move" );
+    public static final Histogram REFRESH = new Histogram( "refresh" );
+    public static final Histogram WIN_CHECK = new Histogram( "win check" );
+    public static final Histogram PAINT = new Histogram( "paint" );
+    public static final Histogram SEARCH = new Histogram( "search" );
+    public static final Histogram REQUEST = new Histogram( "request" );
+
+    public static final LongAdder NODES = new LongAdder();
+    public static final LongAdder GENERATED = new LongAdder();
+    public static final LongAdder DUPLICATES = new LongAdder();
+
+    private Metrics()
+    {
+    }
+
+    /*
+     *   Whether to make flight recorder events.  The first event class to load costs a
+     *   few hundred milliseconds while the recorder prepares it, which a command that
+     *   runs for less than a second cannot afford.  So no event is made until the
+     *   recorder has started, from -XX:StartFlightRecording or jcmd JFR.start.
+     *
+     *   @return                     boolean, true once the flight recorder is running
+     */
+    public static boolean recording()
+    {
+        return FlightRecorder.isInitialized();
+    }
+
+    /*
+     *   Durations of one kind of operation.
+     */
+    public static final class Histogram
+    {
+        private final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray( 64 );
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram( String name )
+        {
+            this.name = name;
+        }
+
+        /*
+         *   Add a duration.
+         *
+         *   @param       nanos          duration in nanoseconds
+         */
+        public void record( long nanos )
+        {
+            nanos = Math.max( nanos, 1 );
+            buckets.incrementAndGet( 63 - Long.numberOfLeadingZeros( nanos ) );
+            total.add( nanos );
+            if( nanos > max.get() )
+            {
+                max.accumulateAndGet( nanos, Math::max );
+            }
+        }
+
+        /*
+         *   @return                     number of durations recorded
+         */
+        public long count()
+        {
+            long n = 0;
+            for( int i = 0; i < 64; i++ )
+            {
+                n += buckets.get( i );
+            }
+            return n;
+        }
+
+        /*
+         *   Estimate a percentile as the upper end of the bucket that holds it.
+         *
+         *   @param       p              percentile, from 0 to 100
+         *   @return                     long duration in nanoseconds, or 0 if none
+         */
+        public long percentile( double p )
+        {
+            long n = count();
+            long rank = ( long ) Math.ceil( n * p / 100 );
+            long seen = 0;
+            for( int i = 0; i < 64 && n > 0; i++ )
+            {
+                seen += buckets.get( i );
+                if( seen >= Math.max( rank, 1 ) )
+                {
+                    return Math.min( ( 2L << i ) - 1, max.get() );
+                }
+            }
+            return 0;
+        }
+
+        /*
+         *   @return                     String of the count, mean, p50, p99, and max
+         */
+        public String toString()
+        {
+            long n = count();
+            return String.format( "%-11s %8d   mean %9.1f us   p50 %9.1f us   " +
+                                  "p99 %9.1f us   max %9.1f us", name, n,
+                                  n == 0 ? 0.0 : total.sum() / 1000.0 / n,
+                                  percentile( 50 ) / 1000.0, percentile( 99 ) / 1000.0,
+                                  max.get() / 1000.0 );
+        }
+    }
+
+    /*
+     *   Print every histogram and counter.
+     *
+     *   @param       out            PrintStream to print to
+     */
+    public static void report( PrintStream out )
+    {
+        for( Histogram h : new Histogram [] { CLICK, MOVE_CHECK, MOVE, REFRESH, WIN_CHECK,
+                                              PAINT, SEARCH, REQUEST } )
+        {
+            out.println( h );
+        }
+        long generated = GENERATED.sum();
+        out.printf( "solver: %d nodes, %d positions generated, table hit rate %.1f%%%n",
+                    NODES.sum(), generated,
+                    generated == 0 ? 0.0 : 100.0 * DUPLICATES.sum() / generated );
+    }
+}
@@ -0,0 +1,563 @@
+/************
+ *
+ *    Self checks for the Board model of FreeCell game and the code built on it.
+ *    Runs from the command line with no libraries and no display.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+
+/*
+ *   Each check plays the game through the same public methods the GUI, the Solver,
+ *   and the tools use, and compares two ways of getting the same answer: the moves found
+ *   legal against the rules, the hash kept up to date against the hash worked out
+ *   from scratch, a position against the same position copied or packed and
+ *   unpacked, and so on.  Positions come from random games on a fixed seed, so
+ *   a failure can be run again as it was.
+ *
+ *   Usage:
+ *       java ModelChecks [games]
+ *
+ *   games is the number of random games to play through, 200 by default.  Every
+ *   failed check prints a line, and the exit status is 1 if any failed.
+ */
+public class ModelChecks
+{
+    private static final long SEED = 20261017L;
+
+    /*
+     *   The classic deal 1, row by row from the top, as rank and suit letters.
+     */
+    private static final String [] DEAL_1 =
+    {
+        "JD 2D 9H JC 5D 7H 7C 5H",
+        "KD KC 9S 5S AD QC KH 3H",
+        "2S KS 9D QD JS AS AH 3C",
+        "4C 5C TS QH 4H AC 4D 7S",
+        "3S TD 4S TH 8H 2C JH 7D",
+        "6D 8S 8D QS 6C 3D 8C TC",
+        "6S 9C 2H 6H"
+    };
+
+    private final int games;
+    private final Random random = new Random( SEED );
+    private final byte [] deck = new byte [ Board.DECK_SIZE ];
+    private final int [] moves = new int [ MoveGenerator.MAX_MOVES ];
+    private final int [] generated = new int [ MoveGenerator.MAX_MOVES ];
+    private int checks;
+    private int failures;
+
+    /*
+     *   Constructor method.
+     *
+     *   @param       games          number of random games to play through
+     */
+    public ModelChecks( int games )
+    {
+        this.games = games;
+    }
+
+    /*
+     *   Count a check, and print it if it failed.
+     */
+    private void check( boolean passed, String what )
+    {
+        checks++;
+        if( ! passed )
+        {
+            failures++;
+            System.out.println( "FAILED: " + what );
+        }
+    }
+
+    /*
+     *   Deal a numbered game onto a new Board.
+     */
+    private Board dealt( long deal )
+    {
+        Board board = new Board();
+        Deals.fill( deal, deck );
+        board.deal( deck );
+        return board;
+    }
+
+    /*
+     *   Run every check.
+     *
+     *   @return                     number of failed checks
+     */
+    public int run() throws IOException
+    {
+        dealOne();
+        for( int g = 0; g < games; g++ )
+        {
+            long deal = 1 + random.nextInt( 32000 );
+            randomGame( deal );
+        }
+        solverLines();
+        cellLimits();
+        archiveRoundTrip();
+        fullTables();
+        System.out.println( checks + " checks, " + failures + " failed" );
+        return failures;
+    }
+
+    /*
+     *   Deal 1 must come out as it does in every other FreeCell with numbered deals.
+     */
+    private void dealOne()
+    {
+        Board board = dealt( 1 );
+        for( int row = 0; row < DEAL_1.length; row++ )
+        {
+            String [] cards = DEAL_1[ row ].split( " " );
+            for( int col = 0; col < cards.length; col++ )
+            {
+                boolean dealt = board.columnLength( col ) > row &&
+                                is( board.cardAt( col, row ), cards[ col ] );
+                check( dealt,
+                       "deal 1 column " + col + " row " + row + " is " + cards[ col ] );
+            }
+        }
+    }
+
+    /*
+     *   Test a card code against a card written as rank and suit letters, such as
+     *   "TD".  The suit letters are in the order of the Suit ordinals.
+     */
+    private static boolean is( int code, String card )
+    {
+        return Board.rankOf( code ) == "A23456789TJQK".indexOf( card.charAt( 0 ) ) + 1 &&
+               Board.suitOf( code ) == "SDCH".indexOf( card.charAt( 1 ) );
+    }
+
+    /*
+     *   Play random legal moves from a deal until the game is won or stuck or 200
+     *   moves are played, checking every position on the way, then undo the game
+     *   back to the deal and redo it.
+     */
+    private void randomGame( long deal )
+    {
+        Board board = dealt( deal );
+        byte [] start = packed( board );
+        MoveJournal journal = new MoveJournal();
+        for( int i = 0; i < 200 && ! board.isWon(); i++ )
+        {
+            positionChecks( board, deal );
+            int n = legalMoves( board, deal );
+            if( n == 0 )
+            {
+                break;
+            }
+            int move = moves[ random.nextInt( n ) ];
+            board.move( move );
+            journal.record( move );
+            check( board.hash() == board.computeHash(),
+                   "deal " + deal + ": hash kept after " + Moves.toString( move ) );
+        }
+        positionChecks( board, deal );
+
+        byte [] end = packed( board );
+        long endHash = board.hash();
+        while( journal.canUndo() )
+        {
+            journal.undo( board );
+            check( board.hash() == board.computeHash(),
+                   "deal " + deal + ": hash kept by undo" );
+        }
+        check( Arrays.equals( packed( board ), start ),
+               "deal " + deal + ": undo reaches the deal" );
+        while( journal.canRedo() )
+        {
+            journal.redo( board );
+        }
+        check( Arrays.equals( packed( board ), end ) && board.hash() == endHash,
+               "deal " + deal + ": redo reaches the end again" );
+    }
+
+    /*
+     *   The contents of every place on the board, in a fixed order, to compare two
+     *   positions.
+     */
+    private static byte [] layout( Board board )
+    {
+        byte [] out = new byte [ Board.COLUMNS * ( Board.MAX_COLUMN + 1 ) + Board.CELLS +
+                                 Board.PILES ];
+        int p = 0;
+        for( int col = 0; col < Board.COLUMNS; col++ )
+        {
+            out[ p++ ] = ( byte ) board.columnLength( col );
+            for( int row = 0; row < Board.MAX_COLUMN; row++ )
+            {
+                out[ p++ ] = row < board.columnLength( col ) ? board.cardAt( col, row ) :
+                             Board.EMPTY;
+            }
+        }
+        for( int i = 0; i < Board.CELLS; i++ )
+        {
+            out[ p++ ] = board.freeCell( i );
+        }
+        for( int i = 0; i < Board.PILES; i++ )
+        {
+            out[ p++ ] = board.removePile( i );
+        }
+        return out;
+    }
+
+    /*
+     *   Places on the board numbered in a row: the columns, the free cells, then the
+     *   remove piles.
+     */
+    private static int zone( int place )
+    {
+        return place < Board.COLUMNS ? Board.COLUMN :
+               place < Board.COLUMNS + Board.CELLS ? Board.FREE_CELL : Board.REMOVE_PILE;
+    }
+
+    private static int index( int place )
+    {
+        return place < Board.COLUMNS ? place : ( place - Board.COLUMNS ) % Board.CELLS;
+    }
+
+    private static byte [] packed( Board board )
+    {
+        byte [] out = new byte [ Board.PACKED_SIZE ];
+        board.pack( out );
+        return out;
+    }
+
+    /*
+     *   Try every move of every size between every pair of places, and list those
+     *   check allows.  canMove, and check of the packed move, must give the same
+     *   answer as check, and the MoveGenerator must list exactly those moves, each
+     *   once.
+     *
+     *   @return                     number of legal moves, left in moves
+     */
+    private int legalMoves( Board board, long deal )
+    {
+        int n = 0;
+        int places = Board.COLUMNS + Board.CELLS + Board.PILES;
+        for( int from = 0; from < Board.COLUMNS + Board.CELLS; from++ )
+        {
+            int most = from < Board.COLUMNS ? board.columnLength( from ) : 1;
+            for( int count = 1; count <= most; count++ )
+            {
+                for( int to = 0; to < places; to++ )
+                {
+                    int result = board.check( zone( from ), index( from ), count,
+                                              zone( to ), index( to ) );
+                    int move = Moves.pack( zone( from ), index( from ), count, zone( to ),
+                                           index( to ) );
+                    check( board.canMove( zone( from ), index( from ), count, zone( to ),
+                                          index( to ) ) == ( result == Board.LEGAL ) &&
+                           board.check( move ) == result,
+                           "deal " + deal + ": canMove agrees with check" );
+                    if( result == Board.LEGAL )
+                    {
+                        check( to != from, "deal " + deal + ": no move to where it is" );
+                        moves[ n++ ] = move;
+                    }
+                }
+            }
+        }
+        int listed = MoveGenerator.legalMoves( board, generated );
+        int [] expected = Arrays.copyOf( moves, n );
+        int [] actual = Arrays.copyOf( generated, listed );
+        Arrays.sort( expected );
+        Arrays.sort( actual );
+        check( Arrays.equals( actual, expected ),
+               "deal " + deal + ": legalMoves lists the moves check allows" );
+        return n;
+    }
+
+    /*
+     *   Every Card must be in exactly one place, and a copy of the Board must hold
+     *   the same position, packed and unpacked either way or not.  Rearranging the
+     *   position without changing how it plays must keep its canonical hash.
+     */
+    private void positionChecks( Board board, long deal )
+    {
+        int [] seen = new int [ Board.DECK_SIZE ];
+        byte [] places = layout( board );
+        for( int col = 0; col < Board.COLUMNS; col++ )
+        {
+            for( int row = 0; row < board.columnLength( col ); row++ )
+            {
+                seen[ board.cardAt( col, row ) ]++;
+            }
+        }
+        for( int i = 0; i < Board.CELLS; i++ )
+        {
+            if( board.freeCell( i ) != Board.EMPTY )
+            {
+                seen[ board.freeCell( i ) ]++;
+            }
+        }
+        for( int i = 0; i < Board.PILES; i++ )
+        {
+            byte top = board.removePile( i );
+            int lowest = top == Board.EMPTY ? 0 : top - Board.rankOf( top ) + 1;
+            for( int code = top; code >= lowest; code-- )
+            {
+                seen[ code ]++;
+            }
+        }
+        boolean once = true;
+        for( int n : seen )
+        {
+            once = once && n == 1;
+        }
+        check( once, "deal " + deal + ": every Card is in exactly one place" );
+        check( Arrays.equals( layout( new Board( board ) ), places ) &&
+               new Board( board ).hash() == board.hash(),
+               "deal " + deal + ": a copy holds the same position" );
+
+        Board copy = new Board();
+        copy.unpack( packed( board ) );
+        check( Arrays.equals( layout( copy ), places ) && copy.hash() == board.hash() &&
+               Arrays.equals( packed( copy ), packed( board ) ),
+               "deal " + deal + ": pack and unpack" );
+
+        byte [] compact = new byte [ Board.COMPACT_SIZE + 2 ];
+        board.packCompact( compact, 2 );
+        copy = new Board();
+        copy.unpackCompact( compact, 2 );
+        check( copy.hash() == board.hash() && copy.hash() == copy.computeHash() &&
+               Arrays.equals( packed( copy ), packed( board ) ),
+               "deal " + deal + ": compact pack and unpack" );
+
+        copy = new Board( board );
+        copy.canonicalize();
+        check( copy.canonicalHash() == board.canonicalHash(),
+               "deal " + deal + ": canonicalize keeps the canonical hash" );
+        check( copy.hash() == copy.computeHash(),
+               "deal " + deal + ": canonicalize keeps the hash" );
+        Board again = new Board( copy );
+        again.canonicalize();
+        check( Arrays.equals( packed( again ), packed( copy ) ),
+               "deal " + deal + ": canonical form is canonical" );
+    }
+
+    /*
+     *   Every move of a line the Solver finds must be legal where it is played, and
+     *   the line must end in a won game.  A search whose table fills must never
+     *   claim a deal is unsolvable.
+     */
+    private void solverLines()
+    {
+        Solver solver = new Solver();
+        for( long deal = 1; deal <= 20; deal++ )
+        {
+            Board board = dealt( deal );
+            Solution s = solver.solve( new Board( board ) );
+            if( ! s.isSolved() )
+            {
+                continue;
+            }
+            boolean legal = true;
+            for( int move : s.getMoves() )
+            {
+                legal = legal && board.check( move ) == Board.LEGAL;
+                if( legal )
+                {
+                    board.move( move );
+                }
+            }
+            check( legal && board.isWon(),
+                   "deal " + deal + ": Solver line plays and wins" );
+        }
+        check( solver.solve( dealt( 11982 ) ).getStatus() != Solution.SOLVED,
+               "deal 11982 is not reported solved" );
+        for( int capacity = 16; capacity <= 4096; capacity *= 4 )
+        {
+            solver.setVisitedTable( new ConcurrentPositionTable( capacity ) );
+            Solution s = solver.solve( dealt( 11982 ) );
+            check( s.getStatus() == Solution.BUDGET_EXHAUSTED,
+                   "deal 11982 with a full table of " + capacity +
+                   " runs out of budget" );
+        }
+        ParallelSolver parallel = new ParallelSolver( 2, Solver.DEFAULT_NODE_BUDGET,
+                                                      Solver.DEFAULT_TIME_BUDGET_MILLIS );
+        for( int capacity = 16; capacity <= 4096; capacity *= 4 )
+        {
+            parallel.setVisitedTable( new ConcurrentPositionTable( capacity ) );
+            Solution s = parallel.solve( dealt( 11982 ) );
+            check( s.getStatus() == Solution.BUDGET_EXHAUSTED,
+                   "deal 11982 in parallel with a table of " + capacity +
+                   " runs out of budget" );
+        }
+        parallel.shutdown();
+    }
+
+    /*
+     *   A line the Solver finds with fewer free cells must never hold more Cards in
+     *   the cells than allowed, nor move a run longer than the cells under the limit
+     *   and the empty columns can carry.  The cells a deal is rated as needing must
+     *   be enough for the Solver to win it.
+     */
+    private void cellLimits()
+    {
+        Solver solver = new Solver();
+        Board scratch = new Board();
+        for( long deal = 1; deal <= 10; deal++ )
+        {
+            DifficultyIndex.Rating r =
+                DifficultyIndex.rate( deal, scratch, deck, solver );
+            solver.setCellLimit( r.cellsNeeded );
+            Board board = dealt( deal );
+            Solution s = solver.solve( new Board( board ) );
+            solver.setCellLimit( Board.CELLS );
+            check( s.isSolved(),
+                   "deal " + deal + " wins with " + r.cellsNeeded + " cells" );
+            boolean kept = true;
+            for( int move : s.getMoves() )
+            {
+                int columns = empties( board );
+                if( Moves.destZone( move ) == Board.COLUMN &&
+                    board.columnLength( Moves.destIndex( move ) ) == 0 )
+                {
+                    columns--;
+                }
+                int cells = Math.max( r.cellsNeeded - cellsUsed( board ), 0 );
+                kept = kept && board.check( move ) == Board.LEGAL &&
+                       Moves.count( move ) <= cells + 1 << columns;
+                board.move( move );
+                kept = kept && cellsUsed( board ) <= r.cellsNeeded;
+            }
+            check( kept, "deal " + deal + ": line keeps to " + r.cellsNeeded + " cells" );
+        }
+    }
+
+    /*
+     *   @return                     number of free cells of a Board holding a Card
+     */
+    private static int cellsUsed( Board board )
+    {
+        int n = 0;
+        for( int i = 0; i < Board.CELLS; i++ )
+        {
+            n += board.freeCell( i ) != Board.EMPTY ? 1 : 0;
+        }
+        return n;
+    }
+
+    /*
+     *   @return                     number of empty columns of a Board
+     */
+    private static int empties( Board board )
+    {
+        int n = 0;
+        for( int col = 0; col < Board.COLUMNS; col++ )
+        {
+            n += board.columnLength( col ) == 0 ? 1 : 0;
+        }
+        return n;
+    }
+
+    /*
+     *   Games written to an archive must read back move for move, and replay to the
+     *   position they reached.  Replay must stop at a move that is not legal.  A
+     *   record whose length runs past the end of the file must be refused, and dropped
+     *   when a writer opens the archive again.
+     */
+    private void archiveRoundTrip() throws IOException
+    {
+        Path file = Files.createTempFile( "freecell", ".archive" );
+        try
+        {
+            List< int [] > written = new ArrayList< int [] >();
+            try( GameArchiveWriter writer = new GameArchiveWriter( file ) )
+            {
+                for( long deal = 1; deal <= 5; deal++ )
+                {
+                    int [] line = new Solver().solve( dealt( deal ) ).getMoves();
+                    writer.append( deal, line, line.length );
+                    written.add( line );
+                }
+                int [] bad = written.get( 0 ).clone();
+                bad[ 2 ] = bad[ 0 ];
+                writer.append( 1, bad, bad.length );
+            }
+            Board board = new Board();
+            int [] read = new int [ 256 ];
+            try( GameArchiveReader reader = new GameArchiveReader( file ) )
+            {
+                for( int g = 0; g < written.size(); g++ )
+                {
+                    int [] line = written.get( g );
+                    check( reader.next() && reader.deal() == g + 1,
+                           "archive game " + g + " read" );
+                    int n = reader.moves( read );
+                    check( Arrays.equals( Arrays.copyOf( read, n ), line ),
+                           "archive game " + g + " moves round trip" );
+                    check( reader.replay( board, deck ) == line.length && board.isWon(),
+                           "archive game " + g + " replays to a win" );
+                }
+                check( reader.next() && reader.replay( board, deck ) == 2,
+                       "archive replay stops at an illegal move" );
+                check( ! reader.next(), "archive ends" );
+            }
+            long whole = Files.size( file );
+            ByteBuffer damaged = ByteBuffer.allocate( 2 * GameRecord.MAX_HEADER );
+            GameRecord.putVarint( 7, damaged );
+            GameRecord.putVarint( 1L << 40, damaged );
+            damaged.put( ( byte ) 0 );
+            Files.write( file, Arrays.copyOf( damaged.array(), damaged.position() ),
+                         StandardOpenOption.APPEND );
+            boolean refused = false;
+            try( GameArchiveReader reader = new GameArchiveReader( file ) )
+            {
+                while( reader.next() )
+                {
+                }
+            }
+            catch( EOFException e )
+            {
+                refused = true;
+            }
+            check( refused, "archive record past the end of the file is refused" );
+            new GameArchiveWriter( file ).close();
+            check( Files.size( file ) == whole, "archive writer drops a damaged record" );
+        }
+        finally
+        {
+            Files.delete( file );
+        }
+    }
+
+    /*
+     *   A fixed sized visited table must refuse a key when it has no room, report
+     *   full, and be empty again after clear.
+     */
+    private void fullTables()
+    {
+        VisitedTable [] tables = { new ConcurrentPositionTable( 10 ),
+                                   new OffHeapPositionTable( 1024 ) };
+        for( VisitedTable table : tables )
+        {
+            String name = table.getClass().getName();
+            boolean refused = false;
+            for( long key = 1; key <= 10000 && ! refused; key++ )
+            {
+                refused = ! table.add( key * 0x9E3779B97F4A7C15L );
+            }
+            check( refused && table.isFull(), name + " refuses keys when full" );
+            table.clear();
+            check( table.size() == 0 && ! table.isFull() && table.add( 12345 ),
+                   name + " is empty after clear" );
+        }
+    }
+
+    public static void main( String [] args ) throws IOException
+    {
+        int games = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 200;
+        System.exit( new ModelChecks( games ).run() == 0 ? 0 : 1 );
+    }
+}
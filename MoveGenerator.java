@@ -0,0 +1,205 @@
+/************
+ *
+ *    Move generator for FreeCell game.  Lists the legal moves from a position as
+ *    packed ints, for the solvers, hints, and auto-play.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+/*
+ *   MoveGenerator has only static methods.  Moves are written into an int Array the
+ *   caller keeps and reuses, so listing the moves of a position allocates nothing.
+ *   The moves follow exactly the rules of Board.check, but instead of checking every
+ *   source, count, and destination they are found directly: a run can only be placed
+ *   on a Card one rank above one of its own Cards, so for each pair of columns the
+ *   number of Cards to move is read off the difference in rank, and the pair is kept
+ *   if Board.canStack says the colors alternate.
+ *
+ *   Two lists are offered.  legalMoves gives every legal move.  searchMoves leaves
+ *   out moves a search never needs, because another move in the list reaches the same
+ *   position up to the order of the columns and free cells: only the first empty
+ *   column and the first empty free cell are used as destinations, a whole column is
+ *   never moved to an empty column, a Card never moves from one free cell to another,
+ *   and an Ace only goes to the first empty remove pile.
+ */
+public final class MoveGenerator
+{
+    /*
+     *   Largest number of moves either method can list from any position, and so the
+     *   size of Array to pass them.  Each column can send its end Card to a pile and a
+     *   free cell, and its run of up to 13 Cards, 1 count per empty column destination
+     *   or a single count onto a Card, to each other column; each free cell can send
+     *   its Card to a pile, another cell, or any column.
+     */
+    public static final int MAX_MOVES = Board.COLUMNS * ( Board.PILES + Board.CELLS +
+                                        ( Board.COLUMNS - 1 ) * 13 ) +
+                                        Board.CELLS * ( Board.PILES + Board.CELLS +
+                                        Board.COLUMNS );
+
+    private MoveGenerator()
+    {
+    }
+
+    /*
+     *   List every legal move from a position.
+     *
+     *   @param       b              Board in the position
+     *   @param       out            int [] of at least MAX_MOVES to fill with moves
+     *   @return                     number of moves written
+     */
+    public static int legalMoves( Board b, int [] out )
+    {
+        return generate( b, out, false );
+    }
+
+    /*
+     *   List the legal moves from a position that a search needs to try, leaving out
+     *   moves that only reach a position another listed move reaches.
+     *
+     *   @param       b              Board in the position
+     *   @param       out            int [] of at least MAX_MOVES to fill with moves
+     *   @return                     number of moves written
+     */
+    public static int searchMoves( Board b, int [] out )
+    {
+        return generate( b, out, true );
+    }
+
+    private static int generate( Board b, int [] out, boolean distinct )
+    {
+        int n = 0;
+        int emptyCol = -1;
+        int emptyCell = -1;
+        for( int col = Board.COLUMNS - 1; col >= 0; col-- )
+        {
+            if( b.columnLength( col ) == 0 )
+            {
+                emptyCol = col;
+            }
+        }
+        for( int i = Board.CELLS - 1; i >= 0; i-- )
+        {
+            if( b.freeCell( i ) == Board.EMPTY )
+            {
+                emptyCell = i;
+            }
+        }
+        int toCard = b.maxMoveCount( false );
+        int toEmpty = b.maxMoveCount( true );
+
+        for( int i = 0; i < Board.CELLS; i++ )
+        {
+            byte card = b.freeCell( i );
+            if( card == Board.EMPTY )
+            {
+                continue;
+            }
+            n = toPiles( b, Board.FREE_CELL, i, card, out, n, distinct );
+            for( int dest = 0; dest < Board.COLUMNS; dest++ )
+            {
+                byte under = b.topCard( dest );
+                if( under == Board.EMPTY ? ! distinct || dest == emptyCol :
+                    Board.canStack( card, under ) )
+                {
+                    out[ n++ ] = Moves.pack( Board.FREE_CELL, i, 1, Board.COLUMN, dest );
+                }
+            }
+            for( int cell = 0; cell < Board.CELLS && ! distinct; cell++ )
+            {
+                if( b.freeCell( cell ) == Board.EMPTY )
+                {
+                    out[ n++ ] = Moves.pack( Board.FREE_CELL, i, 1,
+                                             Board.FREE_CELL, cell );
+                }
+            }
+        }
+
+        for( int src = 0; src < Board.COLUMNS; src++ )
+        {
+            int length = b.columnLength( src );
+            if( length == 0 )
+            {
+                continue;
+            }
+            byte top = b.topCard( src );
+            n = toPiles( b, Board.COLUMN, src, top, out, n, distinct );
+            int run = b.orderedLength( src );
+            int topRank = Board.rankOf( top );
+            for( int dest = 0; dest < Board.COLUMNS; dest++ )
+            {
+                if( dest == src )
+                {
+                    continue;
+                }
+                byte under = b.topCard( dest );
+                if( under == Board.EMPTY )
+                {
+                    if( distinct && dest != emptyCol )
+                    {
+                        continue;
+                    }
+                    int most = Math.min( run, toEmpty );
+                    if( distinct && most == length )
+                    {
+                        most--;
+                    }
+                    for( int count = 1; count <= most; count++ )
+                    {
+                        out[ n++ ] = Moves.pack( Board.COLUMN, src, count,
+                                                 Board.COLUMN, dest );
+                    }
+                    continue;
+                }
+                /**
+                 *   Only the Card of the run one rank below the destination can go on
+                 *   it, which fixes how many Cards move.
+                 */
+                int count = Board.rankOf( under ) - topRank;
+                if( count >= 1 && count <= run && count <= toCard &&
+                    Board.canStack( b.cardAt( src, length - count ), under ) )
+                {
+                    out[ n++ ] = Moves.pack( Board.COLUMN, src, count,
+                                             Board.COLUMN, dest );
+                }
+            }
+            for( int cell = 0; cell < Board.CELLS; cell++ )
+            {
+                if( b.freeCell( cell ) == Board.EMPTY &&
+                    ( ! distinct || cell == emptyCell ) )
+                {
+                    out[ n++ ] = Moves.pack( Board.COLUMN, src, 1,
+                                             Board.FREE_CELL, cell );
+                }
+            }
+        }
+        return n;
+    }
+
+    /*
+     *   Add the moves of a single Card to the remove piles.  A Card other than an Ace
+     *   has at most the pile of its suit; an Ace may start any empty pile.
+     */
+    private static int toPiles( Board b, int srcZone, int srcIndex, int code, int [] out,
+                                int n, boolean distinct )
+    {
+        int pile = b.pileFor( code );
+        if( pile < 0 )
+        {
+            return n;
+        }
+        out[ n++ ] = Moves.pack( srcZone, srcIndex, 1, Board.REMOVE_PILE, pile );
+        if( ! distinct && Board.rankOf( code ) == 1 )
+        {
+            for( int i = pile + 1; i < Board.PILES; i++ )
+            {
+                if( b.removePile( i ) == Board.EMPTY )
+                {
+                    out[ n++ ] = Moves.pack( srcZone, srcIndex, 1, Board.REMOVE_PILE, i );
+                }
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,173 @@
+/************
+ *
+ *    Record of the moves of a FreeCell game, with undo and redo.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.util.*;
+
+/*
+ *   MoveJournal keeps every move played as a packed int from the Moves class, 4 bytes
+ *   a move, in an Array that doubles when full, so the history has no limit.  Nothing
+ *   about the position is copied.  A move is undone by playing its inverse, which
+ *   touches only the Cards that moved, and redone by playing it again.
+ *
+ *   Moves after the current point are kept for redo until a new move is recorded,
+ *   which discards them.  The moves up to the current point are the game so far,
+ *   and can be replayed on a fresh deal or handed to anything that reads a move list,
+ *   such as a Solution.
+ */
+public class MoveJournal
+{
+    private int [] moves;
+    private int played;
+    private int recorded;
+
+    /*
+     *   Constructor method.  Creates an empty journal.
+     */
+    public MoveJournal()
+    {
+        moves = new int [ 64 ];
+    }
+
+    /*
+     *   Constructor method.  Creates a journal holding a list of moves, such as the
+     *   moves of a Solution, ready to be stepped through with redo.
+     *
+     *   @param       list           int [] of packed moves
+     */
+    public MoveJournal( int [] list )
+    {
+        moves = Arrays.copyOf( list, Math.max( 64, list.length ) );
+        recorded = list.length;
+    }
+
+    /*
+     *   Add a move that has just been played.  Any moves that were undone are
+     *   forgotten.
+     *
+     *   @param       move           packed move
+     */
+    public void record( int move )
+    {
+        if( played == moves.length )
+        {
+            moves = Arrays.copyOf( moves, moves.length * 2 );
+        }
+        moves[ played++ ] = move;
+        recorded = played;
+    }
+
+    /*
+     *   @return                     boolean, true if there is a move to undo
+     */
+    public boolean canUndo()
+    {
+        return played > 0;
+    }
+
+    /*
+     *   @return                     boolean, true if there is an undone move to redo
+     */
+    public boolean canRedo()
+    {
+        return played < recorded;
+    }
+
+    /*
+     *   Take back the last move played.
+     *
+     *   @param       board          Board the move was played on
+     *   @return                     packed move that was played to undo it
+     */
+    public int undo( Board board )
+    {
+        if( ! canUndo() )
+        {
+            throw new IllegalStateException( "Nothing to undo" );
+        }
+        int inverse = Moves.inverse( moves[ --played ] );
+        board.move( inverse );
+        return inverse;
+    }
+
+    /*
+     *   Play again the last move taken back.
+     *
+     *   @param       board          Board the move was undone on
+     *   @return                     packed move that was played
+     */
+    public int redo( Board board )
+    {
+        if( ! canRedo() )
+        {
+            throw new IllegalStateException( "Nothing to redo" );
+        }
+        int move = moves[ played++ ];
+        board.move( move );
+        return move;
+    }
+
+    /*
+     *   @return                     packed move redo would play next, or -1 if none
+     */
+    public int nextRedo()
+    {
+        return canRedo() ? moves[ played ] : -1;
+    }
+
+    /*
+     *   @return                     number of moves played and not undone
+     */
+    public int length()
+    {
+        return played;
+    }
+
+    /*
+     *   @param       i              integer index of a move played, from 0
+     *   @return                     packed move
+     */
+    public int get( int i )
+    {
+        if( i < 0 || i >= played )
+        {
+            throw new IndexOutOfBoundsException( "Move " + i + " of " + played );
+        }
+        return moves[ i ];
+    }
+
+    /*
+     *   @return                     int [] of the moves played, in order
+     */
+    public int [] toArray()
+    {
+        return Arrays.copyOf( moves, played );
+    }
+
+    /*
+     *   Play the moves of the journal, in order, on a Board in the starting position.
+     *
+     *   @param       board          Board to play them on
+     */
+    public void replay( Board board )
+    {
+        for( int i = 0; i < played; i++ )
+        {
+            board.move( moves[ i ] );
+        }
+    }
+
+    /*
+     *   Forget every move, for a new game.
+     */
+    public void clear()
+    {
+        played = 0;
+        recorded = 0;
+    }
+}
@@ -0,0 +1,118 @@
+/************
+ *
+ *    Packed move encoding for FreeCell game.  A move is stored in a single int so
+ *    solvers and move lists can keep them in plain int Arrays.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+/*
+ *   Moves has only static methods.  The bits of a packed move, from lowest to
+ *   highest, are source zone (2 bits), source index (3 bits), card count (5 bits),
+ *   destination zone (2 bits), and destination index (3 bits).  Zones are the
+ *   Board.COLUMN, Board.FREE_CELL, and Board.REMOVE_PILE constants.  The next bit,
+ *   AUTOMATIC, marks a move the game played by itself after the player's move, so a
+ *   journal can undo both together.  Board ignores it.
+ */
+public final class Moves
+{
+    public static final int AUTOMATIC = 1 << 15;
+
+    private Moves()
+    {
+    }
+
+    /*
+     *   Pack the parts of a move into an int.
+     *
+     *   @param       srcZone        zone the Cards move from
+     *   @param       srcIndex       integer index in source zone
+     *   @param       count          number of Cards moving
+     *   @param       destZone       zone the Cards move to
+     *   @param       destIndex      integer index in destination zone
+     *   @return                     packed move
+     */
+    public static int pack( int srcZone, int srcIndex, int count, int destZone,
+                            int destIndex )
+    {
+        return srcZone | srcIndex << 2 | count << 5 | destZone << 10 | destIndex << 12;
+    }
+
+    /*
+     *   Getters for each part of a packed move.
+     */
+
+    public static int srcZone( int move )
+    {
+        return move & 3;
+    }
+
+    public static int srcIndex( int move )
+    {
+        return move >>> 2 & 7;
+    }
+
+    public static int count( int move )
+    {
+        return move >>> 5 & 31;
+    }
+
+    public static int destZone( int move )
+    {
+        return move >>> 10 & 3;
+    }
+
+    public static int destIndex( int move )
+    {
+        return move >>> 12 & 7;
+    }
+
+    /*
+     *   The move that puts the Cards of a move back where they were.  Playing a move
+     *   and then its inverse leaves a Board as it started, which is how moves are
+     *   undone.  The inverse of a move to a remove pile takes the Card off the pile.
+     *
+     *   @param       move           packed move
+     *   @return                     packed move with source and destination swapped
+     */
+    public static int inverse( int move )
+    {
+        return pack( destZone( move ), destIndex( move ), count( move ), srcZone( move ),
+                     srcIndex( move ) ) | move & AUTOMATIC;
+    }
+
+    /*
+     *   @param       move           packed move
+     *   @return                     boolean, true if the AUTOMATIC bit is set
+     */
+    public static boolean isAutomatic( int move )
+    {
+        return ( move & AUTOMATIC ) != 0;
+    }
+
+    /*
+     *   Readable form of a move for messages and logs, such as "col 3 -> cell 0" or
+     *   "3 from col 5 -> col 1".
+     *
+     *   @param       move           packed move
+     *   @return                     String description of move
+     */
+    public static String toString( int move )
+    {
+        String from = zoneName( srcZone( move ) ) + " " + srcIndex( move );
+        String to = zoneName( destZone( move ) ) + " " + destIndex( move );
+        int count = count( move );
+        return ( count > 1 ? count + " from " : "" ) + from + " -> " + to;
+    }
+
+    private static String zoneName( int zone )
+    {
+        if( zone == Board.COLUMN )
+        {
+            return "col";
+        }
+        return zone == Board.FREE_CELL ? "cell" : "pile";
+    }
+}
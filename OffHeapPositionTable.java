@@ -0,0 +1,206 @@
+/************
+ *
+ *    Set of visited positions kept outside the Java heap, for searches on very hard
+ *    deals that would otherwise fill the heap and keep the garbage collector busy.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.atomic.*;
+
+/*
+ *   OffHeapPositionTable is an open addressed hash set of 64 bit position hashes,
+ *   like PositionTable, but its slots live in direct ByteBuffers, or in a file mapped
+ *   into memory, instead of in a long Array.  The collector never scans or copies
+ *   the slots, so hundreds of millions of positions cost the heap only a few objects.
+ *
+ *   The memory used is fixed when the table is made, and the table reports itself
+ *   full at three quarters so probing stays short.  A single ByteBuffer can only
+ *   reach 2 GB, so the slots are spread over segments of 2^27 slots each.  Slots are
+ *   claimed with a compare and set, as in ConcurrentPositionTable, so one table can
+ *   be shared by the threads of a ParallelSolver.  The key 0 marks an empty slot and
+ *   a hash of 0 is stored as 1.
+ *
+ *   Direct buffers count against -XX:MaxDirectMemorySize, so give the JVM enough
+ *   room for the table, or back it with a file.
+ */
+public class OffHeapPositionTable implements VisitedTable
+{
+    private static final int SEGMENT_BITS = 27;
+    private static final long SEGMENT_SLOTS = 1L << SEGMENT_BITS;
+    private static final VarHandle SLOT =
+        MethodHandles.byteBufferViewVarHandle( long [].class, ByteOrder.nativeOrder() );
+
+    /*
+     *   Block of zeros copied over the slots to clear them in bulk.
+     */
+    private static final byte [] ZEROS = new byte [ 1 << 20 ];
+
+    private final ByteBuffer [] segments;
+    private final long mask;
+    private final long limit;
+    private final LongAdder size = new LongAdder();
+    private volatile boolean overflowed;
+
+    /*
+     *   Constructor method.  Allocates the slots in direct memory.
+     *
+     *   @param       maxBytes       most memory the table may use
+     */
+    public OffHeapPositionTable( long maxBytes )
+    {
+        long slots = slotsFor( maxBytes );
+        int count = ( int ) ( ( slots + SEGMENT_SLOTS - 1 ) >>> SEGMENT_BITS );
+        segments = new ByteBuffer [ count ];
+        for( int i = 0; i < segments.length; i++ )
+        {
+            int bytes = ( int ) ( segmentSlots( slots, i ) * 8 );
+            segments[ i ] = ByteBuffer.allocateDirect( bytes );
+        }
+        mask = slots - 1;
+        limit = slots / 4 * 3;
+    }
+
+    /*
+     *   Constructor method.  Keeps the slots in a file mapped into memory, so the
+     *   operating system pages them to disk when physical memory runs short.  Any
+     *   existing contents of the file are discarded.
+     *
+     *   @param       maxBytes       size of the file, and most memory the table uses
+     *   @param       file           Path of the file to back the table with
+     */
+    public OffHeapPositionTable( long maxBytes, Path file ) throws IOException
+    {
+        long slots = slotsFor( maxBytes );
+        int count = ( int ) ( ( slots + SEGMENT_SLOTS - 1 ) >>> SEGMENT_BITS );
+        segments = new ByteBuffer [ count ];
+        try( FileChannel channel = FileChannel.open(
+                 file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) )
+        {
+            for( int i = 0; i < segments.length; i++ )
+            {
+                segments[ i ] = channel.map( FileChannel.MapMode.READ_WRITE,
+                                             ( long ) i * SEGMENT_SLOTS * 8,
+                                             segmentSlots( slots, i ) * 8 );
+                segments[ i ].order( ByteOrder.nativeOrder() );
+            }
+        }
+        mask = slots - 1;
+        limit = slots / 4 * 3;
+    }
+
+    /*
+     *   Largest power of 2 number of 8 byte slots that fits in the memory allowed.
+     */
+    private static long slotsFor( long maxBytes )
+    {
+        if( maxBytes < 128 )
+        {
+            throw new IllegalArgumentException( "Table needs at least 128 bytes" );
+        }
+        return Long.highestOneBit( maxBytes / 8 );
+    }
+
+    /*
+     *   Number of slots in segment i of a table with the given total.
+     */
+    private static long segmentSlots( long slots, int i )
+    {
+        return Math.min( SEGMENT_SLOTS, slots - ( long ) i * SEGMENT_SLOTS );
+    }
+
+    /*
+     *   Add a position to the table.  Safe to call from any number of threads.
+     *
+     *   @param       key            64 bit hash of the position
+     *   @return                     boolean, true if this call added the position, false
+     *                               if it was already there or there was no room
+     */
+    public boolean add( long key )
+    {
+        if( key == 0 )
+        {
+            key = 1;
+        }
+        long slot = ( key ^ key >>> 29 ^ key >>> 47 ) & mask;
+        for( long probes = 0; probes <= mask; probes++ )
+        {
+            ByteBuffer segment = segments[ ( int ) ( slot >>> SEGMENT_BITS ) ];
+            int offset = ( int ) ( slot & ( SEGMENT_SLOTS - 1 ) ) << 3;
+            long current = ( long ) SLOT.getVolatile( segment, offset );
+            if( current == key )
+            {
+                return false;
+            }
+            if( current == 0 )
+            {
+                if( SLOT.compareAndSet( segment, offset, 0L, key ) )
+                {
+                    size.increment();
+                    return true;
+                }
+                probes--;
+                continue;
+            }
+            slot = ( slot + 1 ) & mask;
+        }
+        overflowed = true;
+        return false;
+    }
+
+    /*
+     *   @return                     number of positions in the table
+     */
+    public long size()
+    {
+        return size.sum();
+    }
+
+    /*
+     *   @return                     boolean, true once three quarters of slots are used,
+     *                               or once an add found no room
+     */
+    public boolean isFull()
+    {
+        return overflowed || size.sum() >= limit;
+    }
+
+    /*
+     *   Empty every slot so the table can be used for another search.  The slots are
+     *   overwritten a block of zeros at a time, and not at all if nothing was added
+     *   since the table was made or last cleared.
+     */
+    public void clear()
+    {
+        if( size.sum() == 0 && ! overflowed )
+        {
+            return;
+        }
+        for( ByteBuffer segment : segments )
+        {
+            for( int offset = 0; offset < segment.capacity(); offset += ZEROS.length )
+            {
+                segment.put( offset, ZEROS, 0, Math.min( ZEROS.length,
+                                                         segment.capacity() - offset ) );
+            }
+        }
+        size.reset();
+        overflowed = false;
+    }
+
+    /*
+     *   @return                     number of bytes of memory the slots take
+     */
+    public long capacityBytes()
+    {
+        return ( mask + 1 ) * 8;
+    }
+}
@@ -0,0 +1,360 @@
+/************
+ *
+ *    Multi-threaded solver for FreeCell game.  Runs the same best-first search as
+ *    Solver, split across the threads of a ForkJoinPool, for hard deals that would
+ *    leave most cores of a machine idle.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/*
+ *   ParallelSolver first expands positions on one thread until there are enough
+ *   waiting for every worker, then hands them to a single task in the pool.  Each task
+ *   searches its own priority queue best first and, whenever the pool has no queued
+ *   work for idle threads to steal, gives half of its best positions to a newly
+ *   forked task.  All tasks share one ConcurrentPositionTable, so a position reached
+ *   by any thread is expanded only once.  The first task to find a win records it and
+ *   every other task stops at its next check.
+ *
+ *   Moves are generated and played by Solver.Expander, so the moves found follow
+ *   exactly the same rules as Solver and the GUI.
+ */
+public class ParallelSolver
+{
+    /*
+     *   Positions to have waiting for each thread before the pool starts, how many
+     *   positions a task expands between checks of the shared state, and how many of
+     *   its best positions a task looks at when giving half away.
+     */
+    private static final int SEED_PER_THREAD = 8;
+    private static final int CHECK_INTERVAL = 64;
+    private static final int SPLIT_SIZE = 32;
+
+    /*
+     *   The shared table is sized from the node budget, since each expanded position
+     *   adds several children, but never past 2^23 positions.
+     */
+    private static final long MAX_TABLE = 1 << 23;
+
+    private final ForkJoinPool pool;
+    private final long nodeBudget;
+    private final long timeBudgetNanos;
+    private VisitedTable table;
+
+    /*
+     *   Constructor method.  Uses one thread per processor and the default budgets.
+     */
+    public ParallelSolver()
+    {
+        this( Runtime.getRuntime().availableProcessors(), Solver.DEFAULT_NODE_BUDGET,
+              Solver.DEFAULT_TIME_BUDGET_MILLIS );
+    }
+
+    /*
+     *   Constructor method.
+     *
+     *   @param       parallelism        number of threads to search with
+     *   @param       nodeBudget         most positions to expand, over all threads
+     *   @param       timeBudgetMillis   most milliseconds to search before giving up
+     */
+    public ParallelSolver( int parallelism, long nodeBudget, long timeBudgetMillis )
+    {
+        this.pool = new ForkJoinPool( parallelism );
+        this.nodeBudget = nodeBudget;
+        this.timeBudgetNanos = timeBudgetMillis * 1000000L;
+    }
+
+    /*
+     *   Basic setter.  Gives the ParallelSolver a VisitedTable to reuse for every
+     *   search, such as an OffHeapPositionTable holding more positions than the heap
+     *   could.  The table must be safe for many threads to add to at once, and is
+     *   cleared at the start of each search.  Without one, each search makes its own
+     *   ConcurrentPositionTable.
+     *
+     *   @param       visited        VisitedTable to use, or null for the default
+     */
+    public void setVisitedTable( VisitedTable visited )
+    {
+        this.table = visited;
+    }
+
+    /*
+     *   State shared by every task of one search.
+     */
+    private class Search
+    {
+        final long began = System.nanoTime();
+        final VisitedTable visited = table != null ? table :
+            new ConcurrentPositionTable( ( int ) Math.min( nodeBudget * 8, MAX_TABLE ) );
+        final AtomicLong nodes = new AtomicLong();
+        final AtomicReference< Solver.Node > winner =
+            new AtomicReference< Solver.Node >();
+        final LongAdder generated = new LongAdder();
+        final LongAdder duplicates = new LongAdder();
+        final AtomicInteger maxOpen = new AtomicInteger();
+        final GameEvents.SearchEvent event =
+            Metrics.recording() ? new GameEvents.SearchEvent() : null;
+        volatile boolean stopped;
+        volatile boolean exhausted;
+
+        /*
+         *   Add a task's recent expansions to the total and decide whether every task
+         *   should stop because a win was found or the budget is used up.
+         *
+         *   @param       expanded       Nodes expanded by the task since it last checked
+         *   @return                     boolean, true if the task should stop
+         */
+        boolean check( long expanded )
+        {
+            if( stopped )
+            {
+                return true;
+            }
+            long total = nodes.addAndGet( expanded );
+            if( total >= nodeBudget || visited.isFull() ||
+                System.nanoTime() - began > timeBudgetNanos )
+            {
+                exhausted = true;
+                stopped = true;
+            }
+            return stopped;
+        }
+
+        /*
+         *   Record a winning Node, keeping only the first one found.
+         */
+        void found( Solver.Node win )
+        {
+            winner.compareAndSet( null, win );
+            stopped = true;
+        }
+
+        /*
+         *   Add the counts of an Expander that is done, for Metrics and the event.
+         */
+        void counted( Solver.Expander expander, int largestQueue )
+        {
+            generated.add( expander.generated );
+            duplicates.add( expander.duplicates );
+            maxOpen.accumulateAndGet( largestQueue, Math::max );
+        }
+    }
+
+    /*
+     *   One part of the search.  Searches its own queue of Nodes and splits off new
+     *   tasks while other threads are idle.  Tasks are never serialized.
+     */
+    @SuppressWarnings( "serial" )
+    private class SearchTask extends RecursiveAction
+    {
+        private final Search search;
+        private final List< Solver.Node > start;
+
+        SearchTask( Search search, List< Solver.Node > start )
+        {
+            this.search = search;
+            this.start = start;
+        }
+
+        protected void compute()
+        {
+            PriorityQueue< Solver.Node > open = new PriorityQueue< Solver.Node >(
+                Math.max( 16, start.size() ), Solver.ORDER );
+            open.addAll( start );
+            Solver.Expander expander = new Solver.Expander();
+            List< SearchTask > forked = new ArrayList< SearchTask >();
+            long expanded = 0;
+            int largestQueue = 0;
+
+            while( ! open.isEmpty() )
+            {
+                largestQueue = Math.max( largestQueue, open.size() );
+                if( expanded == CHECK_INTERVAL )
+                {
+                    boolean stop = search.check( expanded );
+                    expanded = 0;
+                    if( stop )
+                    {
+                        break;
+                    }
+                    if( open.size() > 1 && getSurplusQueuedTaskCount() <= 0 )
+                    {
+                        SearchTask half = new SearchTask( search, split( open ) );
+                        half.fork();
+                        forked.add( half );
+                    }
+                }
+                expanded++;
+                Solver.Node win = expander.expand( open.poll(), search.visited, open );
+                if( win != null )
+                {
+                    search.found( win );
+                    break;
+                }
+            }
+            search.nodes.addAndGet( expanded );
+            search.counted( expander, largestQueue );
+            for( SearchTask task : forked )
+            {
+                task.join();
+            }
+        }
+    }
+
+    /*
+     *   Take the best Nodes from a queue and give every other one away, so the queue
+     *   and the new task each keep a share of the most promising positions.
+     *
+     *   @param       open           queue to split
+     *   @return                     List of Nodes removed for a new task
+     */
+    private static List< Solver.Node > split( PriorityQueue< Solver.Node > open )
+    {
+        List< Solver.Node > given = new ArrayList< Solver.Node >();
+        List< Solver.Node > kept = new ArrayList< Solver.Node >();
+        for( int i = 0; i < SPLIT_SIZE && ! open.isEmpty(); i++ )
+        {
+            ( i % 2 == 0 ? kept : given ).add( open.poll() );
+        }
+        open.addAll( kept );
+        return given;
+    }
+
+    /*
+     *   Search for a win from a position.  The Board supplied is not changed.
+     *
+     *   @param       start          Board in the position to solve
+     *   @return                     Solution with the outcome and winning moves
+     */
+    public Solution solve( Board start )
+    {
+        Search search = new Search();
+        if( search.event != null )
+        {
+            search.event.begin();
+        }
+        search.visited.clear();
+        Solver.Expander expander = new Solver.Expander();
+        Solver.Node root = expander.root( start );
+        if( root.won )
+        {
+            return finish( search, root );
+        }
+        search.visited.add( root.key );
+
+        /**
+         *   Expand on this thread until every worker can have several positions,
+         *   stopping early on the same budgets and full table the workers check.
+         */
+        PriorityQueue< Solver.Node > open =
+            new PriorityQueue< Solver.Node >( 64, Solver.ORDER );
+        open.add( root );
+        int wanted = pool.getParallelism() * SEED_PER_THREAD;
+        while( ! open.isEmpty() && open.size() < wanted )
+        {
+            Solver.Node win = expander.expand( open.poll(), search.visited, open );
+            if( win != null )
+            {
+                search.nodes.incrementAndGet();
+                search.counted( expander, open.size() );
+                return finish( search, win );
+            }
+            if( search.check( 1 ) )
+            {
+                search.counted( expander, open.size() );
+                return finish( search, null );
+            }
+        }
+        search.counted( expander, open.size() );
+        pool.invoke( new SearchTask( search, new ArrayList< Solver.Node >( open ) ) );
+        return finish( search, search.winner.get() );
+    }
+
+    /*
+     *   Build the Solution for a finished search, and record it as Solver does.
+     */
+    private Solution finish( Search search, Solver.Node win )
+    {
+        long nanos = System.nanoTime() - search.began;
+        Solution s;
+        if( win != null )
+        {
+            s = new Solution( Solution.SOLVED, Solver.path( win ),
+                              search.nodes.get(), nanos );
+        }
+        else
+        {
+            /**
+             *   A full table drops positions, so running out of them is no proof.
+             */
+            boolean cut = search.exhausted || search.visited.isFull();
+            int status = cut ? Solution.BUDGET_EXHAUSTED : Solution.UNSOLVABLE;
+            s = new Solution( status, new int [ 0 ], search.nodes.get(), nanos );
+        }
+        return Solver.finish( s, search.event, search.generated.sum(),
+                              search.duplicates.sum(),
+                              search.visited.size(), search.maxOpen.get() );
+    }
+
+    /*
+     *   Stop the threads of the pool once no more searches will be run.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /*
+     *   Measure how the search speeds up with more threads.  Solves a range of deals
+     *   with 1 thread, then 2, 4, and so on up to the number of processors, and prints
+     *   the time taken, nodes expanded per second, and speedup over 1 thread.
+     *
+     *   Usage: java ParallelSolver [firstDeal] [lastDeal] [nodeBudget]
+     */
+    public static void main( String [] args )
+    {
+        long first = args.length > 0 ? Long.parseLong( args[ 0 ] ) : 1;
+        long last = args.length > 1 ? Long.parseLong( args[ 1 ] ) : 100;
+        long budget = args.length > 2 ? Long.parseLong( args[ 2 ] ) : 1000000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        byte [] deck = new byte [ Board.DECK_SIZE ];
+        Board board = new Board();
+        List< Integer > counts = new ArrayList< Integer >();
+        for( int threads = 1; threads < cores; threads *= 2 )
+        {
+            counts.add( threads );
+        }
+        counts.add( cores );
+        double baseline = 0;
+        for( int threads : counts )
+        {
+            ParallelSolver solver = new ParallelSolver( threads, budget, 60000 );
+            long nodes = 0;
+            int solved = 0;
+            long began = System.nanoTime();
+            for( long deal = first; deal <= last; deal++ )
+            {
+                Deals.fill( deal, deck );
+                board.deal( deck );
+                Solution s = solver.solve( board );
+                nodes += s.getNodes();
+                solved += s.isSolved() ? 1 : 0;
+            }
+            double seconds = ( System.nanoTime() - began ) / 1e9;
+            solver.shutdown();
+            if( threads == 1 )
+            {
+                baseline = seconds;
+            }
+            System.out.printf( "%3d threads: %d/%d solved, %.2f s, %.0f nodes/s, " +
+                               "speedup %.2f%n", threads, solved, last - first + 1,
+                               seconds, nodes / seconds, baseline / seconds );
+        }
+    }
+}
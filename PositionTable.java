@@ -0,0 +1,150 @@
+/************
+ *
+ *    Set of visited positions for the FreeCell Solver, keyed by a 64 bit hash of each
+ *    position.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.util.*;
+
+/*
+ *   PositionTable is an open addressed hash set of long keys stored in a plain long
+ *   Array, so adding a position boxes nothing and creates no entry objects.  The
+ *   Array doubles when it becomes half full, so it is never full.  It is meant for
+ *   one thread at a time.  The key 0 marks an empty slot, so a hash that happens to
+ *   be 0 is stored as 1 instead.
+ */
+public class PositionTable implements VisitedTable
+{
+    private long [] keys;
+    private int mask;
+    private int size;
+
+    /*
+     *   Constructor method.
+     *
+     *   @param       expected       number of positions expected, used for first size
+     */
+    public PositionTable( int expected )
+    {
+        int capacity = Integer.highestOneBit( Math.max( 16, expected * 2 - 1 ) ) << 1;
+        keys = new long [ capacity ];
+        mask = capacity - 1;
+    }
+
+    /*
+     *   Add a position to the set.
+     *
+     *   @param       key            64 bit hash of the position
+     *   @return                     boolean, true if the position was not already there
+     */
+    public boolean add( long key )
+    {
+        if( key == 0 )
+        {
+            key = 1;
+        }
+        int i = spread( key ) & mask;
+        while( keys[ i ] != 0 )
+        {
+            if( keys[ i ] == key )
+            {
+                return false;
+            }
+            i = ( i + 1 ) & mask;
+        }
+        keys[ i ] = key;
+        size++;
+        if( size * 2 > keys.length )
+        {
+            grow();
+        }
+        return true;
+    }
+
+    /*
+     *   Test whether a position is in the set.
+     *
+     *   @param       key            64 bit hash of the position
+     *   @return                     boolean, true if the position was added before
+     */
+    public boolean contains( long key )
+    {
+        if( key == 0 )
+        {
+            key = 1;
+        }
+        int i = spread( key ) & mask;
+        while( keys[ i ] != 0 )
+        {
+            if( keys[ i ] == key )
+            {
+                return true;
+            }
+            i = ( i + 1 ) & mask;
+        }
+        return false;
+    }
+
+    /*
+     *   Basic getter.  Returns the number of positions in the set
+     *
+     *   @return                     number of positions
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    /*
+     *   The Array grows as needed, so the set is never full.
+     *
+     *   @return                     boolean, always false
+     */
+    public boolean isFull()
+    {
+        return false;
+    }
+
+    /*
+     *   Remove every position, keeping the Array at its current size.
+     */
+    public void clear()
+    {
+        Arrays.fill( keys, 0L );
+        size = 0;
+    }
+
+    /*
+     *   Double the Array and put every key back in its new slot.
+     */
+    private void grow()
+    {
+        long [] old = keys;
+        keys = new long [ old.length * 2 ];
+        mask = keys.length - 1;
+        for( long key : old )
+        {
+            if( key != 0 )
+            {
+                int i = spread( key ) & mask;
+                while( keys[ i ] != 0 )
+                {
+                    i = ( i + 1 ) & mask;
+                }
+                keys[ i ] = key;
+            }
+        }
+    }
+
+    /*
+     *   Mix the high bits of a key into the low bits used to pick a slot.
+     */
+    static int spread( long key )
+    {
+        return ( int ) ( key ^ key >>> 29 ^ key >>> 47 );
+    }
+}
@@ -0,0 +1,108 @@
+/************
+ *
+ *    Result of running the Solver on a FreeCell position.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+/*
+ *   Solution holds the outcome of a search, the moves that win the game when one was
+ *   found, and how much work the search did.  The moves are packed by the Moves class
+ *   and can be played in order on a Board starting from the position that was solved.
+ */
+public class Solution
+{
+    /*
+     *   Possible outcomes of a search.  UNSOLVABLE means every reachable position was
+     *   searched without finding a win, BUDGET_EXHAUSTED means the search stopped at
+     *   its node or time limit first.
+     */
+    public static final int SOLVED = 0;
+    public static final int UNSOLVABLE = 1;
+    public static final int BUDGET_EXHAUSTED = 2;
+
+    private final int status;
+    private final int [] moves;
+    private final long nodes;
+    private final long nanos;
+
+    /*
+     *   Constructor method.
+     *
+     *   @param       status         SOLVED, UNSOLVABLE, or BUDGET_EXHAUSTED
+     *   @param       moves          int [] of packed moves, empty unless SOLVED
+     *   @param       nodes          number of positions expanded by the search
+     *   @param       nanos          time taken by the search in nanoseconds
+     */
+    public Solution( int status, int [] moves, long nodes, long nanos )
+    {
+        this.status = status;
+        this.moves = moves;
+        this.nodes = nodes;
+        this.nanos = nanos;
+    }
+
+    /*
+     *   Basic getter.  Returns outcome of the search
+     *
+     *   @return                     SOLVED, UNSOLVABLE, or BUDGET_EXHAUSTED
+     */
+    public int getStatus()
+    {
+        return status;
+    }
+
+    /*
+     *   Basic getter.  Returns true if the search found a win
+     *
+     *   @return                     boolean, true if status is SOLVED
+     */
+    public boolean isSolved()
+    {
+        return status == SOLVED;
+    }
+
+    /*
+     *   Basic getter.  Returns the winning moves, which the caller must not change
+     *
+     *   @return                     int [] of packed moves
+     */
+    public int [] getMoves()
+    {
+        return moves;
+    }
+
+    /*
+     *   Basic getter.  Returns number of positions the search expanded
+     *
+     *   @return                     long, nodes expanded
+     */
+    public long getNodes()
+    {
+        return nodes;
+    }
+
+    /*
+     *   Basic getter.  Returns time the search took
+     *
+     *   @return                     long, elapsed nanoseconds
+     */
+    public long getNanos()
+    {
+        return nanos;
+    }
+
+    /*
+     *   Short summary of the result, such as "solved in 94 moves, 1502 nodes, 3 ms".
+     *
+     *   @return                     String summary
+     */
+    public String toString()
+    {
+        String outcome = status == SOLVED ? "solved in " + moves.length + " moves" :
+                         status == UNSOLVABLE ? "unsolvable" : "budget exhausted";
+        return outcome + ", " + nodes + " nodes, " + nanos / 1000000 + " ms";
+    }
+}
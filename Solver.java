@@ -0,0 +1,449 @@
+/************
+ *
+ *    Solver for FreeCell game.  Searches for a sequence of moves that wins a game
+ *    from any position, using the same rules the GUI enforces through Board.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.util.*;
+
+/*
+ *   Solver runs a best-first search.  Positions waiting to be expanded are kept in a
+ *   priority queue ordered by a score estimating how far each is from a win, and
+ *   every position reached is recorded in a PositionTable so it is only expanded once.
+ *   After each move, any Cards that are safe to remove are moved to the remove piles
+ *   straight away, which never loses a game and keeps the search small.
+ *
+ *   The search stops when a winning position is found, when no positions are left,
+ *   which proves the game cannot be won, or when the node or time budget runs out.
+ */
+public class Solver
+{
+    public static final long DEFAULT_NODE_BUDGET = 200000;
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 10000;
+
+    private final long nodeBudget;
+    private final long timeBudgetNanos;
+    private VisitedTable table;
+    private int cellLimit = Board.CELLS;
+
+    /*
+     *   Constructor method.  Uses the default node and time budgets.
+     */
+    public Solver()
+    {
+        this( DEFAULT_NODE_BUDGET, DEFAULT_TIME_BUDGET_MILLIS );
+    }
+
+    /*
+     *   Constructor method.
+     *
+     *   @param       nodeBudget         most positions to expand before giving up
+     *   @param       timeBudgetMillis   most milliseconds to search before giving up
+     */
+    public Solver( long nodeBudget, long timeBudgetMillis )
+    {
+        this.nodeBudget = nodeBudget;
+        this.timeBudgetNanos = timeBudgetMillis * 1000000L;
+    }
+
+    /*
+     *   Basic setter.  Gives the Solver a VisitedTable to reuse for every search, such
+     *   as an OffHeapPositionTable for deals too hard for the heap.  The table is
+     *   cleared at the start of each search.  Without one, each search makes its own
+     *   PositionTable.
+     *
+     *   @param       visited        VisitedTable to use, or null for the default
+     */
+    public void setVisitedTable( VisitedTable visited )
+    {
+        this.table = visited;
+    }
+
+    /*
+     *   Basic setter.  Makes the Solver play as if only some of the free cells were
+     *   there: no move may leave more than cells of them holding Cards, and a run
+     *   moved between columns may park Cards only in the cells left under the limit.
+     *   Used to find how few free cells a deal can be won with.
+     *
+     *   @param       cells          number of free cells to use, up to Board.CELLS
+     */
+    public void setCellLimit( int cells )
+    {
+        this.cellLimit = cells;
+    }
+
+    /*
+     *   A position waiting in the queue.  Holds the packed position and its hash, the
+     *   moves that led to it from its parent, and its score.  The sequence number
+     *   breaks ties so the search is the same every time it runs.  Nodes never change
+     *   once made, so searches on different threads can share them.
+     */
+    static class Node
+    {
+        final byte [] position;
+        final long key;
+        final Node parent;
+        final int [] moves;
+        final int depth;
+        final int score;
+        final long sequence;
+        final boolean won;
+
+        Node( byte [] position, long key, Node parent, int [] moves, int depth, int score,
+              long sequence, boolean won )
+        {
+            this.position = position;
+            this.key = key;
+            this.parent = parent;
+            this.moves = moves;
+            this.depth = depth;
+            this.score = score;
+            this.sequence = sequence;
+            this.won = won;
+        }
+    }
+
+    /*
+     *   Order of the priority queue: lowest score first, then oldest first.
+     */
+    static final Comparator< Node > ORDER =
+        ( a, b ) -> a.score != b.score ? Integer.compare( a.score, b.score ) :
+                                         Long.compare( a.sequence, b.sequence );
+
+    /*
+     *   Working space for expanding Nodes.  Each thread of a search needs its own,
+     *   since the Boards and buffers are reused for every child.  The Node being
+     *   expanded is unpacked once into parent, and each child starts as a copy of it,
+     *   so the hash of the child only has to be updated for the Cards that move.
+     *   Children are recorded by their canonical hash, so a position reached again
+     *   with its Cards in other free cells or its columns in another order is not
+     *   searched twice.
+     */
+    static class Expander
+    {
+        private final Board parent = new Board();
+        private final Board work = new Board();
+        private final byte [] scratch = new byte [ Board.PACKED_SIZE ];
+        private final int [] moveBuffer = new int [ MoveGenerator.MAX_MOVES ];
+        private final int [] playBuffer = new int [ Board.DECK_SIZE + 1 ];
+        private long sequence;
+        int cellLimit = Board.CELLS;
+        long generated;
+        long duplicates;
+
+        /*
+         *   Make the first Node of a search, after playing any safe Cards to the
+         *   remove piles.
+         *
+         *   @param       start          Board in the position to solve
+         *   @return                     root Node
+         */
+        Node root( Board start )
+        {
+            work.copyFrom( start );
+            int played = autoPlay( work, playBuffer, 0 );
+            work.pack( scratch );
+            return new Node( scratch.clone(), work.canonicalHash(), null,
+                             Arrays.copyOf( playBuffer, played ), 0, score( work, 0 ),
+                             sequence++, work.isWon() );
+        }
+
+        /*
+         *   Make a Node for every position reachable in one move that is not yet in
+         *   the visited table, and add it to the queue.  Stops early if one of them
+         *   wins the game.
+         *
+         *   @param       node           Node to expand
+         *   @param       visited        VisitedTable of positions already reached
+         *   @param       open           queue to add new Nodes to
+         *   @return                     winning Node, or null if none was found
+         */
+        Node expand( Node node, VisitedTable visited, Queue< Node > open )
+        {
+            parent.unpack( node.position );
+            int count = MoveGenerator.searchMoves( parent, moveBuffer );
+            for( int i = 0; i < count; i++ )
+            {
+                if( cellLimit < Board.CELLS && ! withinCells( parent, moveBuffer[ i ] ) )
+                {
+                    continue;
+                }
+                work.copyFrom( parent );
+                work.move( moveBuffer[ i ] );
+                playBuffer[ 0 ] = moveBuffer[ i ];
+                int played = autoPlay( work, playBuffer, 1 );
+                long key = work.canonicalHash();
+                generated++;
+                if( ! visited.add( key ) )
+                {
+                    duplicates++;
+                    continue;
+                }
+                work.pack( scratch );
+                Node child = new Node( scratch.clone(), key, node,
+                                       Arrays.copyOf( playBuffer, played ),
+                                       node.depth + 1, score( work, node.depth + 1 ),
+                                       sequence++, work.isWon() );
+                if( child.won )
+                {
+                    return child;
+                }
+                open.add( child );
+            }
+            return null;
+        }
+
+        /*
+         *   Decide whether a move keeps to cellLimit free cells.  A move to a free
+         *   cell needs one of them empty, and a run between columns may be as long
+         *   as maxMoveCount allows with only the cells under the limit empty.
+         *
+         *   @param       b              Board the move is played on
+         *   @param       move           packed move
+         *   @return                     boolean, true if the move keeps to the limit
+         */
+        private boolean withinCells( Board b, int move )
+        {
+            int used = 0;
+            for( int i = 0; i < Board.CELLS; i++ )
+            {
+                if( b.freeCell( i ) != Board.EMPTY )
+                {
+                    used++;
+                }
+            }
+            if( Moves.destZone( move ) == Board.FREE_CELL )
+            {
+                return used < cellLimit;
+            }
+            if( Moves.count( move ) == 1 )
+            {
+                return true;
+            }
+            int columns = b.columnLength( Moves.destIndex( move ) ) == 0 ? -1 : 0;
+            for( int col = 0; col < Board.COLUMNS; col++ )
+            {
+                if( b.columnLength( col ) == 0 )
+                {
+                    columns++;
+                }
+            }
+            return Moves.count( move ) <= Math.max( cellLimit - used + 1, 1 ) << columns;
+        }
+    }
+
+    /*
+     *   Search for a win from a position.  The Board supplied is not changed.  If the
+     *   thread running the search is interrupted, the search stops at its next check
+     *   of the time budget, as if the budget had run out.  Each search is recorded as
+     *   a GameEvents.SearchEvent and in Metrics.
+     *
+     *   @param       start          Board in the position to solve
+     *   @return                     Solution with the outcome and winning moves
+     */
+    public Solution solve( Board start )
+    {
+        GameEvents.SearchEvent event =
+            Metrics.recording() ? new GameEvents.SearchEvent() : null;
+        if( event != null )
+        {
+            event.begin();
+        }
+        long began = System.nanoTime();
+        PriorityQueue< Node > open = new PriorityQueue< Node >( 1024, ORDER );
+        VisitedTable visited = table != null ? table : new PositionTable( 1 << 16 );
+        visited.clear();
+        Expander expander = new Expander();
+        expander.cellLimit = cellLimit;
+        long nodes = 0;
+        int maxOpen = 0;
+
+        Node root = expander.root( start );
+        if( root.won )
+        {
+            return finish( new Solution( Solution.SOLVED, path( root ), 0,
+                                         System.nanoTime() - began ),
+                           event, expander.generated, expander.duplicates,
+                           visited.size(), maxOpen );
+        }
+        visited.add( root.key );
+        open.add( root );
+
+        while( ! open.isEmpty() )
+        {
+            if( nodes >= nodeBudget || visited.isFull() || ( ( nodes & 255 ) == 0 &&
+                ( System.nanoTime() - began > timeBudgetNanos ||
+                  Thread.currentThread().isInterrupted() ) ) )
+            {
+                return finish( new Solution( Solution.BUDGET_EXHAUSTED, new int [ 0 ],
+                                             nodes, System.nanoTime() - began ),
+                               event, expander.generated, expander.duplicates,
+                               visited.size(), maxOpen );
+            }
+            maxOpen = Math.max( maxOpen, open.size() );
+            nodes++;
+            Node win = expander.expand( open.poll(), visited, open );
+            if( win != null )
+            {
+                return finish( new Solution( Solution.SOLVED, path( win ), nodes,
+                                             System.nanoTime() - began ),
+                               event, expander.generated, expander.duplicates,
+                               visited.size(), maxOpen );
+            }
+        }
+
+        /**
+         *   A full table drops positions it has no room for, so an empty queue only
+         *   proves the deal unsolvable if the table never filled.
+         */
+        int status = visited.isFull() ? Solution.BUDGET_EXHAUSTED : Solution.UNSOLVABLE;
+        return finish( new Solution( status, new int [ 0 ], nodes,
+                                     System.nanoTime() - began ),
+                       event, expander.generated, expander.duplicates,
+                       visited.size(), maxOpen );
+    }
+
+    /*
+     *   Record a finished search in Metrics, and as an event if a flight recording
+     *   wants it.  ParallelSolver records its searches here too.
+     *
+     *   @param       event          GameEvents.SearchEvent begun with the search, or null
+     *
+     *   @return                     the Solution, to return to the caller
+     */
+    static Solution finish( Solution s, GameEvents.SearchEvent event, long generated,
+                            long duplicates, long tableSize, int maxOpen )
+    {
+        Metrics.SEARCH.record( s.getNanos() );
+        Metrics.NODES.add( s.getNodes() );
+        Metrics.GENERATED.add( generated );
+        Metrics.DUPLICATES.add( duplicates );
+        if( event != null && event.shouldCommit() )
+        {
+            Runtime rt = Runtime.getRuntime();
+            event.status = s.toString();
+            event.nodes = s.getNodes();
+            event.generated = generated;
+            event.duplicates = duplicates;
+            event.tableSize = tableSize;
+            event.maxOpen = maxOpen;
+            event.heapUsed = rt.totalMemory() - rt.freeMemory();
+            event.commit();
+        }
+        return s;
+    }
+
+    /*
+     *   Move every Card that is safe to remove to its remove pile, repeating until no
+     *   more can go, and record the moves made.
+     *
+     *   @param       b              Board to play the moves on
+     *   @param       out            int [] to record the packed moves in
+     *   @param       n              number of moves already in out
+     *   @return                     number of moves in out afterwards
+     */
+    static int autoPlay( Board b, int [] out, int n )
+    {
+        boolean moved = true;
+        while( moved )
+        {
+            moved = false;
+            for( int i = 0; i < Board.CELLS; i++ )
+            {
+                byte card = b.freeCell( i );
+                if( card != Board.EMPTY && b.safeToRemove( card ) &&
+                    b.pileFor( card ) >= 0 )
+                {
+                    out[ n ] = Moves.pack( Board.FREE_CELL, i, 1, Board.REMOVE_PILE,
+                                           b.pileFor( card ) );
+                    b.move( out[ n++ ] );
+                    moved = true;
+                }
+            }
+            for( int col = 0; col < Board.COLUMNS; col++ )
+            {
+                byte card = b.topCard( col );
+                if( card != Board.EMPTY && b.safeToRemove( card ) &&
+                    b.pileFor( card ) >= 0 )
+                {
+                    out[ n ] = Moves.pack( Board.COLUMN, col, 1, Board.REMOVE_PILE,
+                                           b.pileFor( card ) );
+                    b.move( out[ n++ ] );
+                    moved = true;
+                }
+            }
+        }
+        return n;
+    }
+
+    /*
+     *   Estimate how far a position is from a win, lower being closer.  A Card that
+     *   sits above a Card of lower rank is misplaced and has to move before the game
+     *   can end, and Cards buried over the next Card each pile needs hold up removal.
+     *   Occupied free cells count against a position and empty columns for it.  Part
+     *   of the depth is added so the search prefers shorter ways to the same place.
+     *
+     *   @param       b              Board in the position
+     *   @param       depth          number of moves made to reach the position
+     *   @return                     integer score
+     */
+    static int score( Board b, int depth )
+    {
+        int misplaced = 0;
+        int buried = 0;
+        int emptyCols = 0;
+        for( int col = 0; col < Board.COLUMNS; col++ )
+        {
+            int length = b.columnLength( col );
+            if( length == 0 )
+            {
+                emptyCols++;
+                continue;
+            }
+            int lowest = Integer.MAX_VALUE;
+            for( int row = 0; row < length; row++ )
+            {
+                byte card = b.cardAt( col, row );
+                int rank = Board.rankOf( card );
+                if( rank > lowest )
+                {
+                    misplaced++;
+                }
+                lowest = Math.min( lowest, rank );
+                if( rank == b.pileRank( Board.suitOf( card ) ) + 1 )
+                {
+                    buried += length - row - 1;
+                }
+            }
+        }
+        int cellsUsed = Board.CELLS - b.getFreeCells() + emptyCols;
+        return 8 * misplaced + 2 * buried + 3 * cellsUsed - 4 * emptyCols
+               - b.cardsRemoved() + 2 * depth;
+    }
+
+    /*
+     *   Walk back from a winning node to the start, collecting the moves in order.
+     *
+     *   @param       node           winning Node
+     *   @return                     int [] of packed moves from the start
+     */
+    static int [] path( Node node )
+    {
+        int total = 0;
+        for( Node n = node; n != null; n = n.parent )
+        {
+            total += n.moves.length;
+        }
+        int [] moves = new int [ total ];
+        for( Node n = node; n != null; n = n.parent )
+        {
+            total -= n.moves.length;
+            System.arraycopy( n.moves, 0, moves, total, n.moves.length );
+        }
+        return moves;
+    }
+}
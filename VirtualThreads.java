@@ -0,0 +1,41 @@
+/************
+ *
+ *    Access to virtual threads for FreeCell game, on Java runtimes that have them.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+import java.util.concurrent.*;
+
+/*
+ *   VirtualThreads has only static members.  The game still compiles and runs on
+ *   runtimes from before virtual threads, so the executor is looked up by reflection,
+ *   and each caller chooses what to run on when there is none.
+ */
+public final class VirtualThreads
+{
+    private VirtualThreads()
+    {
+    }
+
+    /*
+     *   Make an executor that starts a new virtual thread for each task.
+     *
+     *   @return                     ExecutorService, or null if the runtime has no
+     *                               virtual threads
+     */
+    public static ExecutorService perTaskExecutor()
+    {
+        try
+        {
+            return ( ExecutorService ) Executors.class
+                       .getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+        }
+        catch( ReflectiveOperationException e )
+        {
+            return null;
+        }
+    }
+}
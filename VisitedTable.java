@@ -0,0 +1,45 @@
+/************
+ *
+ *    Interface for the sets of visited positions used by the FreeCell solvers.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+/*
+ *   A VisitedTable records the 64 bit hashes of positions a search has reached.  The
+ *   solvers only need to add a hash and learn whether it was new, so the table can be
+ *   a growing heap Array, a fixed concurrent Array shared by many threads, or any
+ *   other store.  A table with a fixed size reports when it is full so the search can
+ *   stop instead of expanding positions it can no longer record.
+ */
+public interface VisitedTable
+{
+    /*
+     *   Add a position to the table.
+     *
+     *   A table with a fixed size that has no room left returns false without adding
+     *   the position, and reports itself full from then on.
+     *
+     *   @param       key            64 bit hash of the position
+     *   @return                     boolean, true if the position was not already there
+     *                               and was added
+     */
+    boolean add( long key );
+
+    /*
+     *   @return                     number of positions in the table
+     */
+    long size();
+
+    /*
+     *   @return                     boolean, true if no more positions can be recorded
+     */
+    boolean isFull();
+
+    /*
+     *   Remove every position, so the table can be used for another search.
+     */
+    void clear();
+}
@@ -0,0 +1,52 @@
+/************
+ *
+ *    Runs the FreeCell benchmarks with allocation profiling turned on.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+package bench;
+
+import java.awt.*;
+import org.openjdk.jmh.profile.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+/*
+ *   The benchmarks are a Maven module of their own in this directory, kept apart from
+ *   the game so it still builds with plain javac and no libraries.  The module
+ *   compiles the game's sources from the parent directory along with the benchmarks,
+ *   runs the JMH annotation processor, and packs it all with JMH into one jar.  From
+ *   the benchmarks directory:
+ *
+ *       mvn package
+ *       java -jar target/benchmarks.jar
+ *
+ *   Any arguments are the usual JMH command line, for example a pattern to run only
+ *   some benchmarks, -wi 1 -i 1 -f 1 -w 1s -r 1s for a quick check that they run, or
+ *   -prof to add profilers.
+ *
+ *   Every run adds the GC profiler, so each result comes with gc.alloc.rate.norm,
+ *   the bytes allocated by one operation, beside its time.  GuiBenchmark needs a
+ *   display and is left out when there is none.
+ */
+public class BenchmarkMain
+{
+    public static void main( String [] args ) throws Exception
+    {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .parent( new CommandLineOptions( args ) )
+            .addProfiler( GCProfiler.class );
+        if( args.length == 0 )
+        {
+            options.include( "bench\\..*" );
+        }
+        if( GraphicsEnvironment.isHeadless() )
+        {
+            options.exclude( "GuiBenchmark" );
+        }
+        new Runner( options.build() ).run();
+    }
+}
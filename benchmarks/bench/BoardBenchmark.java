@@ -0,0 +1,109 @@
+/************
+ *
+ *    Benchmarks of dealing and of the Board queries the GUI and solvers call most.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+package bench;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/*
+ *   Each benchmark returns its result so JMH keeps the work from being optimized
+ *   away.  The queries run on a position from the middle of deal 617, after 40 moves
+ *   of its solution, so the columns hold runs of several lengths and some free cells
+ *   and remove piles are in use.  The deepest Card of the longest column is used for
+ *   the per-Card queries, which is their worst case.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@State( Scope.Thread )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class BoardBenchmark
+{
+    @Param( { "617" } )
+    public long deal;
+
+    private byte [] deck = new byte [ 52 ];
+    private int [] moves = new int [ 1024 ];
+    private Object fresh;
+    private Object board;
+    private int col;
+
+    @Setup
+    public void setup() throws Throwable
+    {
+        fresh = Game.newBoard();
+        board = Game.midGame( deal, 40 );
+        for( int c = 0; c < 8; c++ )
+        {
+            if( Game.columnLength( board, c ) > Game.columnLength( board, col ) )
+            {
+                col = c;
+            }
+        }
+    }
+
+    /*
+     *   FreeCell.shuffle: the deal number's order of the 52 Cards.
+     */
+    @Benchmark
+    public byte [] shuffle() throws Throwable
+    {
+        Game.fill( deal, deck );
+        return deck;
+    }
+
+    /*
+     *   The Board half of FreeCell.dealCards: shuffle and lay the Cards out.
+     */
+    @Benchmark
+    public Object dealCards() throws Throwable
+    {
+        Game.fill( deal, deck );
+        Game.deal( fresh, deck );
+        return fresh;
+    }
+
+    @Benchmark
+    public boolean gameWon() throws Throwable
+    {
+        return Game.isWon( board );
+    }
+
+    @Benchmark
+    public boolean topIsOrdered() throws Throwable
+    {
+        return Game.topIsOrdered( board, col, 0 );
+    }
+
+    @Benchmark
+    public int getFreeCells() throws Throwable
+    {
+        return Game.getFreeCells( board );
+    }
+
+    @Benchmark
+    public int cardsOnTop() throws Throwable
+    {
+        return Game.cardsOnTop( board, col, 0 );
+    }
+
+    @Benchmark
+    public int legalMoves() throws Throwable
+    {
+        return Game.legalMoves( board, moves );
+    }
+
+    @Benchmark
+    public int searchMoves() throws Throwable
+    {
+        return Game.searchMoves( board, moves );
+    }
+}
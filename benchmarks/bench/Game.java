@@ -0,0 +1,279 @@
+/************
+ *
+ *    Bridge from the benchmarks to the classes of FreeCell game.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+package bench;
+
+import java.lang.invoke.*;
+
+/*
+ *   The game's classes are in the default package, which code in a named package
+ *   cannot name, and JMH will not generate benchmarks for classes in the default
+ *   package.  Game looks each method up once by name and keeps it in a static final
+ *   MethodHandle.  The JIT treats those handles as constants and inlines straight
+ *   through them, so a call costs the same as a direct call once warmed up, and the
+ *   numbers measured are those of the game code.
+ *
+ *   Objects of the game's classes are passed around as Object.
+ */
+final class Game
+{
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    static final Class< ? > BOARD = load( "Board" );
+    static final Class< ? > CARD = load( "Card" );
+
+    private static final MethodHandle NEW_BOARD = constructor( "Board" );
+    private static final MethodHandle COPY_FROM =
+        method( "Board", "copyFrom", void.class, BOARD );
+    private static final MethodHandle DEAL =
+        method( "Board", "deal", void.class, byte [].class );
+    private static final MethodHandle MOVE =
+        method( "Board", "move", void.class, int.class );
+    private static final MethodHandle IS_WON = method( "Board", "isWon", boolean.class );
+    private static final MethodHandle FREE_CELLS =
+        method( "Board", "getFreeCells", int.class );
+    private static final MethodHandle TOP_IS_ORDERED =
+        method( "Board", "topIsOrdered", boolean.class, int.class, int.class );
+    private static final MethodHandle CARDS_ON_TOP =
+        method( "Board", "cardsOnTop", int.class, int.class, int.class );
+    private static final MethodHandle COLUMN_LENGTH =
+        method( "Board", "columnLength", int.class, int.class );
+    private static final MethodHandle CARD_AT =
+        method( "Board", "cardAt", byte.class, int.class, int.class );
+    private static final MethodHandle FILL =
+        function( "Deals", "fill", void.class, long.class, byte [].class );
+    private static final MethodHandle LEGAL_MOVES =
+        function( "MoveGenerator", "legalMoves", int.class, BOARD, int [].class );
+    private static final MethodHandle SEARCH_MOVES =
+        function( "MoveGenerator", "searchMoves", int.class, BOARD, int [].class );
+    private static final MethodHandle NEW_SOLVER =
+        constructor( "Solver", long.class, long.class );
+    private static final MethodHandle SOLVE =
+        method( "Solver", "solve", load( "Solution" ), BOARD );
+    private static final MethodHandle SOLVED =
+        method( "Solution", "isSolved", boolean.class );
+    private static final MethodHandle MOVES =
+        method( "Solution", "getMoves", int [].class );
+    private static final MethodHandle NODES =
+        method( "Solution", "getNodes", long.class );
+    private static final MethodHandle SRC_INDEX =
+        function( "Moves", "srcIndex", int.class, int.class );
+    private static final MethodHandle COUNT =
+        function( "Moves", "count", int.class, int.class );
+    private static final MethodHandle DEST_ZONE =
+        function( "Moves", "destZone", int.class, int.class );
+    private static final MethodHandle DEST_INDEX =
+        function( "Moves", "destIndex", int.class, int.class );
+
+    private Game()
+    {
+    }
+
+    static Class< ? > load( String name )
+    {
+        try
+        {
+            return Class.forName( name );
+        }
+        catch( ClassNotFoundException e )
+        {
+            throw new IllegalStateException( "Put the game classes on the class path",
+                                             e );
+        }
+    }
+
+    /*
+     *   Look up a constructor, an instance method, or a static method, and change
+     *   its type so every reference type is Object, to match the call sites below.
+     */
+    static MethodHandle constructor( String cls, Class< ? >... params )
+    {
+        try
+        {
+            MethodType type = MethodType.methodType( void.class, params );
+            MethodHandle h = LOOKUP.findConstructor( load( cls ), type );
+            return h.asType( h.type().erase() );
+        }
+        catch( ReflectiveOperationException e )
+        {
+            throw new IllegalStateException( cls + " has changed", e );
+        }
+    }
+
+    static MethodHandle method( String cls, String name, Class< ? > ret,
+                                Class< ? >... params )
+    {
+        try
+        {
+            MethodHandle h = LOOKUP.findVirtual( load( cls ), name,
+                                                 MethodType.methodType( ret, params ) );
+            return h.asType( h.type().erase() );
+        }
+        catch( ReflectiveOperationException e )
+        {
+            throw new IllegalStateException( cls + "." + name + " has changed", e );
+        }
+    }
+
+    static MethodHandle function( String cls, String name, Class< ? > ret,
+                                  Class< ? >... params )
+    {
+        try
+        {
+            MethodHandle h = LOOKUP.findStatic( load( cls ), name,
+                                                MethodType.methodType( ret, params ) );
+            return h.asType( h.type().erase() );
+        }
+        catch( ReflectiveOperationException e )
+        {
+            throw new IllegalStateException( cls + "." + name + " has changed", e );
+        }
+    }
+
+    /*
+     *   Board.
+     */
+    static Object newBoard() throws Throwable
+    {
+        return ( Object ) NEW_BOARD.invokeExact();
+    }
+
+    static void copyFrom( Object board, Object other ) throws Throwable
+    {
+        COPY_FROM.invokeExact( board, other );
+    }
+
+    static void deal( Object board, byte [] deck ) throws Throwable
+    {
+        DEAL.invokeExact( board, ( Object ) deck );
+    }
+
+    static void move( Object board, int move ) throws Throwable
+    {
+        MOVE.invokeExact( board, move );
+    }
+
+    static boolean isWon( Object board ) throws Throwable
+    {
+        return ( boolean ) IS_WON.invokeExact( board );
+    }
+
+    static int getFreeCells( Object board ) throws Throwable
+    {
+        return ( int ) FREE_CELLS.invokeExact( board );
+    }
+
+    static boolean topIsOrdered( Object board, int col, int row ) throws Throwable
+    {
+        return ( boolean ) TOP_IS_ORDERED.invokeExact( board, col, row );
+    }
+
+    static int cardsOnTop( Object board, int col, int row ) throws Throwable
+    {
+        return ( int ) CARDS_ON_TOP.invokeExact( board, col, row );
+    }
+
+    static int columnLength( Object board, int col ) throws Throwable
+    {
+        return ( int ) COLUMN_LENGTH.invokeExact( board, col );
+    }
+
+    static byte cardAt( Object board, int col, int row ) throws Throwable
+    {
+        return ( byte ) CARD_AT.invokeExact( board, col, row );
+    }
+
+    /*
+     *   Deals, MoveGenerator, and Moves.
+     */
+    static void fill( long number, byte [] deck ) throws Throwable
+    {
+        FILL.invokeExact( number, ( Object ) deck );
+    }
+
+    static int legalMoves( Object board, int [] out ) throws Throwable
+    {
+        return ( int ) LEGAL_MOVES.invokeExact( board, ( Object ) out );
+    }
+
+    static int searchMoves( Object board, int [] out ) throws Throwable
+    {
+        return ( int ) SEARCH_MOVES.invokeExact( board, ( Object ) out );
+    }
+
+    static int srcIndex( int move ) throws Throwable
+    {
+        return ( int ) SRC_INDEX.invokeExact( move );
+    }
+
+    static int count( int move ) throws Throwable
+    {
+        return ( int ) COUNT.invokeExact( move );
+    }
+
+    static int destZone( int move ) throws Throwable
+    {
+        return ( int ) DEST_ZONE.invokeExact( move );
+    }
+
+    static int destIndex( int move ) throws Throwable
+    {
+        return ( int ) DEST_INDEX.invokeExact( move );
+    }
+
+    /*
+     *   Solver and Solution.
+     */
+    static Object newSolver( long nodeBudget, long timeBudgetMillis ) throws Throwable
+    {
+        return ( Object ) NEW_SOLVER.invokeExact( nodeBudget, timeBudgetMillis );
+    }
+
+    static Object solve( Object solver, Object board ) throws Throwable
+    {
+        return ( Object ) SOLVE.invokeExact( solver, board );
+    }
+
+    static boolean isSolved( Object solution ) throws Throwable
+    {
+        return ( boolean ) SOLVED.invokeExact( solution );
+    }
+
+    static int [] getMoves( Object solution ) throws Throwable
+    {
+        return ( int [] ) ( Object ) MOVES.invokeExact( solution );
+    }
+
+    static long getNodes( Object solution ) throws Throwable
+    {
+        return ( long ) NODES.invokeExact( solution );
+    }
+
+    /*
+     *   Deal a numbered game onto a new Board and play the first moves of its
+     *   solution, to give a position from the middle of a game.
+     *
+     *   @param       number         deal number
+     *   @param       played         number of moves of the solution to play
+     *   @return                     Board in the position reached
+     */
+    static Object midGame( long number, int played ) throws Throwable
+    {
+        byte [] deck = new byte [ 52 ];
+        fill( number, deck );
+        Object board = newBoard();
+        deal( board, deck );
+        int [] moves = getMoves( solve( newSolver( 1000000, 60000 ), board ) );
+        for( int i = 0; i < Math.min( played, moves.length ); i++ )
+        {
+            move( board, moves[ i ] );
+        }
+        return board;
+    }
+}
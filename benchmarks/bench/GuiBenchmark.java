@@ -0,0 +1,256 @@
+/************
+ *
+ *    Benchmarks of the FreeCell frame itself, including a move made by clicking.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+package bench;
+
+import java.lang.invoke.*;
+import java.util.concurrent.*;
+import javax.swing.*;
+import org.openjdk.jmh.annotations.*;
+
+/*
+ *   These run the methods of the FreeCell JFrame, so they need a display and are left
+ *   out by BenchmarkMain on a headless machine.  The frame is built without being
+ *   shown, so the times are those of updating the game and its components; nothing
+ *   is drawn on the screen.  Its hint engine is turned off, so no Solver runs in the
+ *   background between moves.  Swing is not thread safe, so every call that changes
+ *   the frame is made on the event dispatch thread and waited for, and its time
+ *   includes that hand off.
+ *
+ *   click measures a whole move as the user makes it: determineSource for the Card
+ *   picked up and again for the Card it is dropped on.  Each invocation starts from a
+ *   fresh deal, made outside the measured time, since the move changes the position.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@State( Scope.Thread )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class GuiBenchmark
+{
+    private static final Class< ? > FREE_CELL = Game.load( "FreeCell" );
+    private static final MethodHandle NEW_GAME =
+        Game.constructor( "FreeCell", boolean.class, boolean.class );
+    private static final MethodHandle SET_HINTS =
+        Game.method( "FreeCell", "setHintsEnabled", void.class, boolean.class );
+    private static final MethodHandle DISPOSE =
+        Game.method( "FreeCell", "dispose", void.class );
+    private static final MethodHandle SHUFFLE =
+        Game.method( "FreeCell", "shuffle", byte [].class, long.class );
+    private static final MethodHandle DEAL_CARDS =
+        Game.method( "FreeCell", "dealCards", void.class, long.class );
+    private static final MethodHandle GAME_WON =
+        Game.method( "FreeCell", "gameWon", boolean.class );
+    private static final MethodHandle FREE_CELLS =
+        Game.method( "FreeCell", "getFreeCells", int.class );
+    private static final MethodHandle CARDS_ON_TOP =
+        Game.method( "FreeCell", "cardsOnTop", int.class, Game.CARD );
+    private static final MethodHandle TOP_IS_ORDERED =
+        Game.method( "FreeCell", "topIsOrdered", boolean.class, Game.CARD );
+    private static final MethodHandle DETERMINE_SOURCE =
+        Game.method( "FreeCell", "determineSource", void.class, Object.class );
+    private static final MethodHandle BOARD = field( "board", Game.BOARD );
+    private static final MethodHandle DECK = field( "gameDeck", Game.CARD.arrayType() );
+
+    @Param( { "617" } )
+    public long deal;
+
+    private Object game;
+    private Object deepest;
+
+    /*
+     *   Read a private field of the frame, to find the Cards to click.
+     */
+    private static MethodHandle field( String name, Class< ? > type )
+    {
+        try
+        {
+            MethodHandles.Lookup lookup =
+                MethodHandles.privateLookupIn( FREE_CELL, MethodHandles.lookup() );
+            MethodHandle h = lookup.findGetter( FREE_CELL, name, type );
+            return h.asType( h.type().erase() );
+        }
+        catch( ReflectiveOperationException e )
+        {
+            throw new IllegalStateException( "FreeCell." + name + " has changed", e );
+        }
+    }
+
+    /*
+     *   Run a call on the event dispatch thread and wait for it.
+     */
+    private interface Call
+    {
+        Object run() throws Throwable;
+    }
+
+    private static Object onEdt( Call call ) throws Throwable
+    {
+        Object [] result = new Object [ 1 ];
+        Throwable [] failure = new Throwable [ 1 ];
+        SwingUtilities.invokeAndWait( () ->
+        {
+            try
+            {
+                result[ 0 ] = call.run();
+            }
+            catch( Throwable t )
+            {
+                failure[ 0 ] = t;
+            }
+        } );
+        if( failure[ 0 ] != null )
+        {
+            throw failure[ 0 ];
+        }
+        return result[ 0 ];
+    }
+
+    /*
+     *   Make the frame, hidden and with no hints, and deal the game, and find the
+     *   deepest Card of the longest column for the per-Card queries, which is their
+     *   worst case.
+     */
+    @Setup
+    public void setup() throws Throwable
+    {
+        game = onEdt( () -> ( Object ) NEW_GAME.invokeExact( false, false ) );
+        onEdt( () ->
+        {
+            SET_HINTS.invokeExact( game, false );
+            DEAL_CARDS.invokeExact( game, deal );
+            return null;
+        } );
+        Object board = ( Object ) BOARD.invokeExact( game );
+        Object [] cards = ( Object [] ) ( Object ) DECK.invokeExact( game );
+        int col = 0;
+        for( int c = 0; c < 8; c++ )
+        {
+            if( Game.columnLength( board, c ) > Game.columnLength( board, col ) )
+            {
+                col = c;
+            }
+        }
+        deepest = cards[ Game.cardAt( board, col, 0 ) ];
+    }
+
+    @TearDown
+    public void tearDown() throws Throwable
+    {
+        onEdt( () ->
+        {
+            DISPOSE.invokeExact( game );
+            return null;
+        } );
+    }
+
+    /*
+     *   The two Cards clicked for a move.  Before each click the game is dealt again,
+     *   and the first legal move from one column onto a Card in another is chosen.
+     *   This is kept apart from the rest of the benchmark so only click pays for a
+     *   setup on every invocation.
+     */
+    @State( Scope.Thread )
+    public static class Clicks
+    {
+        Object pickUp;
+        Object dropOn;
+
+        @Setup( Level.Invocation )
+        public void redeal( GuiBenchmark bench ) throws Throwable
+        {
+            onEdt( () ->
+            {
+                DEAL_CARDS.invokeExact( bench.game, bench.deal );
+                return null;
+            } );
+            Object board = ( Object ) BOARD.invokeExact( bench.game );
+            Object [] cards = ( Object [] ) ( Object ) DECK.invokeExact( bench.game );
+            int [] moves = new int [ 1024 ];
+            int n = Game.legalMoves( board, moves );
+            for( int i = 0; i < n; i++ )
+            {
+                int m = moves[ i ];
+                int from = Game.srcIndex( m );
+                int to = Game.destIndex( m );
+                if( Game.destZone( m ) == 0 && Game.columnLength( board, to ) > 0 )
+                {
+                    int row = Game.columnLength( board, from ) - Game.count( m );
+                    pickUp = cards[ Game.cardAt( board, from, row ) ];
+                    int top = Game.columnLength( board, to ) - 1;
+                    dropOn = cards[ Game.cardAt( board, to, top ) ];
+                    return;
+                }
+            }
+            throw new IllegalStateException( "Deal has no move onto a Card" );
+        }
+    }
+
+    @Benchmark
+    public Object click( Clicks clicks ) throws Throwable
+    {
+        return onEdt( () ->
+        {
+            DETERMINE_SOURCE.invokeExact( game, clicks.pickUp );
+            DETERMINE_SOURCE.invokeExact( game, clicks.dropOn );
+            return null;
+        } );
+    }
+
+    @Benchmark
+    public Object dealCards() throws Throwable
+    {
+        return onEdt( () ->
+        {
+            DEAL_CARDS.invokeExact( game, deal );
+            return null;
+        } );
+    }
+
+    /*
+     *   The queries below only read the frame and its Board.  Nothing else runs while
+     *   they are measured, so they are called straight from the benchmark thread, and
+     *   the time is that of the method alone.
+     */
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.NANOSECONDS )
+    public Object shuffle() throws Throwable
+    {
+        return ( Object ) SHUFFLE.invokeExact( game, deal );
+    }
+
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.NANOSECONDS )
+    public boolean gameWon() throws Throwable
+    {
+        return ( boolean ) GAME_WON.invokeExact( game );
+    }
+
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.NANOSECONDS )
+    public int getFreeCells() throws Throwable
+    {
+        return ( int ) FREE_CELLS.invokeExact( game );
+    }
+
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.NANOSECONDS )
+    public int cardsOnTop() throws Throwable
+    {
+        return ( int ) CARDS_ON_TOP.invokeExact( game, deepest );
+    }
+
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.NANOSECONDS )
+    public boolean topIsOrdered() throws Throwable
+    {
+        return ( boolean ) TOP_IS_ORDERED.invokeExact( game, deepest );
+    }
+}
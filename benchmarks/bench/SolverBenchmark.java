@@ -0,0 +1,86 @@
+/************
+ *
+ *    Benchmark of the Solver, reporting positions expanded per second.
+ *
+ *    @author  Jeff Winning
+ *    @version   Last modified 10.17.26
+ *
+ */
+
+package bench;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/*
+ *   Solves whole deals.  solve reports the time per solve, with the nodes expanded
+ *   and deals solved in each iteration as totals.  nodeRate runs the same solves as
+ *   throughput, and counts nodes as operations, so JMH divides them by the time
+ *   measured and reports the Solver's nodes per second.  The allocation profiler
+ *   turned on by BenchmarkMain gives the bytes allocated per solve.  The deals
+ *   include one that needs few positions and ones that need many.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@State( Scope.Thread )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class SolverBenchmark
+{
+    @Param( { "1", "617", "11982" } )
+    public long deal;
+
+    private Object board;
+    private Object solver;
+
+    /*
+     *   Totals JMH reads after each iteration of solve.
+     */
+    @AuxCounters( AuxCounters.Type.EVENTS )
+    @State( Scope.Thread )
+    public static class Progress
+    {
+        public long nodes;
+        public long solved;
+    }
+
+    /*
+     *   Nodes expanded during nodeRate, reported per second.
+     */
+    @AuxCounters( AuxCounters.Type.OPERATIONS )
+    @State( Scope.Thread )
+    public static class Rate
+    {
+        public long nodes;
+    }
+
+    @Setup
+    public void setup() throws Throwable
+    {
+        byte [] deck = new byte [ 52 ];
+        Game.fill( deal, deck );
+        board = Game.newBoard();
+        Game.deal( board, deck );
+        solver = Game.newSolver( 1000000, 60000 );
+    }
+
+    @Benchmark
+    public Object solve( Progress progress ) throws Throwable
+    {
+        Object solution = Game.solve( solver, board );
+        progress.nodes += Game.getNodes( solution );
+        progress.solved += Game.isSolved( solution ) ? 1 : 0;
+        return solution;
+    }
+
+    @Benchmark
+    @BenchmarkMode( Mode.Throughput )
+    @OutputTimeUnit( TimeUnit.SECONDS )
+    public Object nodeRate( Rate rate ) throws Throwable
+    {
+        Object solution = Game.solve( solver, board );
+        rate.nodes += Game.getNodes( solution );
+        return solution;
+    }
+}